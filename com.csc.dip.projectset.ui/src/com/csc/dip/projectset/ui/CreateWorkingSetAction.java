@@ -26,6 +26,7 @@ import org.eclipse.jface.window.Window;
 import org.eclipse.ui.IWorkingSet;
 import org.eclipse.ui.IWorkingSetManager;
 
+import com.csc.dip.projectset.IProjectSetEntryVisitor;
 import com.csc.dip.projectset.ProjectSet;
 import com.csc.dip.projectset.ProjectSetEntry;
 import com.csc.dip.projectset.ProjectSetPlugin;
@@ -54,24 +55,30 @@ public class CreateWorkingSetAction extends AbstractProjectSetAction {
     }
     
     protected IProject[] getProjects(boolean recursive) {
-        List<IProject> collectedProjects = new ArrayList<IProject>();
+        final List<IProject> collectedProjects = new ArrayList<IProject>();
 		Iterator<IFile> fileIterator = getPSFFiles(selection).iterator();
 		while (fileIterator.hasNext()) {
 			IFile psfFile = fileIterator.next();
-			ProjectSet projectSet = new ProjectSet(psfFile, true);
-			ProjectSetEntry[] psEntries;
+			ProjectSet projectSet = new ProjectSet(psfFile, true, true);
 			if (recursive) {
-			    psEntries = projectSet.getProjectSetEntriesRecursively();
+				projectSet.accept(new IProjectSetEntryVisitor() {
+					public boolean visit(ProjectSetEntry psEntry) {
+						collectedProjects.add(getProject(psEntry));
+						return true;
+					}
+				});
 			} else {
-				psEntries = projectSet.getProjectSetEntries();
+				ProjectSetEntry[] psEntries = projectSet.getProjectSetEntries();
+				for (int i = 0; i < psEntries.length; i++) {
+					collectedProjects.add(getProject(psEntries[i]));
+				}
 			}
-			for (int i = 0; i < psEntries.length; i++) {
-                ProjectSetEntry psEntry = psEntries[i];
-                String projectName = psEntry.getProjectName();
-                collectedProjects.add(
-                        ProjectSetPlugin.getWorkspace().getRoot().getProject(projectName));
-            }
 		}	
 		return collectedProjects.toArray(new IProject[collectedProjects.size()]);
     }
+
+    protected IProject getProject(ProjectSetEntry psEntry) {
+        String projectName = psEntry.getProjectName();
+        return ProjectSetPlugin.getWorkspace().getRoot().getProject(projectName);
+    }
 }
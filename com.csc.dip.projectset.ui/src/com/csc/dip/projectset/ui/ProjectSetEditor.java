@@ -116,6 +116,7 @@ import org.eclipse.ui.part.ISetSelectionTarget;
 
 import com.csc.dip.projectset.NewProjectSetEntryException;
 import com.csc.dip.projectset.NewProjectSetEntryInvTargetException;
+import com.csc.dip.projectset.PathKey;
 import com.csc.dip.projectset.PreferredLocationsUtil;
 import com.csc.dip.projectset.ProjectSet;
 import com.csc.dip.projectset.ProjectSetEntry;
@@ -448,6 +449,8 @@ public class ProjectSetEditor extends EditorPart {
 	
 	protected void inputChanged() {
 		IFile projectSetFile = getProjectSetFile();
+		// the editor shows the references as returned by the providers
+		ProjectSetPlugin.getDefault().getProjectReferenceCache().clear();
 		projectSet = new ProjectSet(projectSetFile, true).copy();
 		projectSet.updateErrors();
 
@@ -844,9 +847,8 @@ public class ProjectSetEditor extends EditorPart {
 			public void widgetSelected(SelectionEvent e) {
 				String current = selectedProjectLoadedLocalDirectory.getText();
 				// set empty text if current is default location
-				if (ProjectSetUtil.pathEquals(
-						current,
-						PreferredLocationsUtil.getDefaultLocation(getSelectedRootEntry()))) {
+				if (PathKey.valueOf(current).equals(
+						PathKey.valueOf(PreferredLocationsUtil.getDefaultLocation(getSelectedRootEntry())))) {
 					selectedPreferredLocation.setText(""); //$NON-NLS-1$
 				} else {
 					selectedPreferredLocation.setText(current);
@@ -983,7 +985,7 @@ public class ProjectSetEditor extends EditorPart {
 					loadedLocalDirectory = ""; //$NON-NLS-1$
 				}
 
-				if (ProjectSetUtil.pathEquals(loadedLocalDirectory, resolvedPrefLocation)) {
+				if (PathKey.valueOf(loadedLocalDirectory).equals(entry.getResolvedPreferredLocationKey())) {
 					selectedProjectLoadedLocalDirectory.setForeground(blackColor);
 				} else {
 					selectedProjectLoadedLocalDirectory.setForeground(warningColor);
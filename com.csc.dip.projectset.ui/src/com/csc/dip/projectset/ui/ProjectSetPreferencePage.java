@@ -58,6 +58,20 @@ public class ProjectSetPreferencePage
 				getFieldEditorParent()
 				);
 		addField(performRefreshEditor);
+		
+		BooleanFieldEditor concurrentLoadingEditor = new BooleanFieldEditor(
+				IProjectSetConstants.CONCURRENT_LOADING_PREFERENCE,
+				Messages.getString("ProjectSetPreferencePage.Load_projects_of_different_team_providers_concurrently"), //$NON-NLS-1$
+				getFieldEditorParent()
+				);
+		addField(concurrentLoadingEditor);
+		
+		BooleanFieldEditor asynchronousValidationEditor = new BooleanFieldEditor(
+				IProjectSetConstants.ASYNCHRONOUS_VALIDATION_PREFERENCE,
+				Messages.getString("ProjectSetPreferencePage.Validate_project_sets_in_the_background"), //$NON-NLS-1$
+				getFieldEditorParent()
+				);
+		addField(asynchronousValidationEditor);
 	}
 
 	/**
@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.team.core.ProjectSetSerializationContext;
+
+/**
+ * This class is used by ProjectSet to load the entries of different
+ * team providers at the same time (see CONCURRENT_LOADING_PREFERENCE).
+ *
+ * The entries of each provider are added to the workspace in their
+ * own thread (at most MAXIMUM_THREADS at a time), sub project sets
+ * are not loaded (see ProjectSet.addSubProjectSetsForLoaded).
+ *
+ * Statuses reported while loading the providers are collected and
+ * passed to the context of the load when all providers are finished,
+ * in the order of the providers.
+ *
+ * The progress of the providers is reported to the monitor of the load
+ * by the calling thread, the providers see a cancellation of this monitor.
+ */
+class ConcurrentProjectSetLoader {
+
+	// the number of providers loaded at the same time
+	private static final int MAXIMUM_THREADS = 4;
+
+	// interval for checking cancellation while waiting for the providers (in milliseconds)
+	private static final long POLL_INTERVAL = 100;
+
+	// the work of one provider on the monitor of the load
+	private static final int PROVIDER_WORK = 100;
+
+	private final ProjectSet projectSet;
+	private final ProjectSetContext context;
+	private final Map<String, ProjectSetEntry> loadedEntries;
+
+	/**
+	 * Constructor for ConcurrentProjectSetLoader.
+	 */
+	public ConcurrentProjectSetLoader(ProjectSet projectSet, ProjectSetContext context, Map<String, ProjectSetEntry> loadedEntries) {
+		super();
+		this.projectSet = projectSet;
+		this.context = context;
+		this.loadedEntries = loadedEntries;
+	}
+
+	/**
+	 * Returns true if the entries of the map (key = provider, value = entries)
+	 * should be loaded concurrently.
+	 *
+	 * The providers are only loaded concurrently if this is enabled in the preferences,
+	 * if no provider refers to a project that is referred by another provider and if
+	 * the current thread does not own a scheduling rule (the projects are created under
+	 * the workspace root rule, waiting for the providers while owning a rule would block them).
+	 * So project set collections, that are loaded in a workspace operation, are always
+	 * loaded sequentially (see AddProjectSetCollectionToWorkspaceAction).
+	 */
+	public static boolean isConcurrentLoading(Map<String, List<ProjectSetEntry>> map) {
+		if (map.size() < 2) {
+			return false;
+		}
+		if (!Platform.getPreferencesService().getBoolean(ProjectSetPlugin.PLUGIN_ID, IProjectSetConstants.CONCURRENT_LOADING_PREFERENCE, false, null)) {
+			return false;
+		}
+		if (Job.getJobManager().currentRule() != null) {
+			return false;
+		}
+		return hasDisjointProjects(map);
+	}
+
+	private static boolean hasDisjointProjects(Map<String, List<ProjectSetEntry>> map) {
+		Set<String> projectNames = new HashSet<String>();
+		Iterator<List<ProjectSetEntry>> entryListIterator = map.values().iterator();
+		while (entryListIterator.hasNext()) {
+			Set<String> providerProjectNames = new HashSet<String>();
+			Iterator<ProjectSetEntry> entryIterator = entryListIterator.next().iterator();
+			while (entryIterator.hasNext()) {
+				String projectName = entryIterator.next().getProjectName();
+				if (projectNames.contains(projectName)) {
+					return false;
+				}
+				providerProjectNames.add(projectName);
+			}
+			projectNames.addAll(providerProjectNames);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds/replaces the entries of the map (key = provider, value = entries).
+	 * 
+	 * If recursive, returns the projects of the entries that are in the workspace
+	 * after loading (see ProjectSet.addExistingToLoaded), otherwise an empty list.
+	 */
+	public List<IProject> addToWorkspace(Map<String, List<ProjectSetEntry>> map, boolean recursive, IProgressMonitor monitor) {
+		List<ProviderLoad> providerLoads = new ArrayList<ProviderLoad>();
+		Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapIterator = map.entrySet().iterator();
+		while (mapIterator.hasNext()) {
+			Map.Entry<String, List<ProjectSetEntry>> mapEntry = mapIterator.next();
+			providerLoads.add(new ProviderLoad(mapEntry.getKey(), mapEntry.getValue()));
+		}
+
+		loadProviders(providerLoads, recursive, monitor);
+
+		List<IProject> loadedProjects = new ArrayList<IProject>();
+		Iterator<ProviderLoad> providerLoadIterator = providerLoads.iterator();
+		while (providerLoadIterator.hasNext()) {
+			ProviderLoad providerLoad = providerLoadIterator.next();
+			providerLoad.reportStatuses();
+			loadedProjects.addAll(Arrays.asList(providerLoad.loadedProjects));
+		}
+		return loadedProjects;
+	}
+
+	/**
+	 * Runs the provider loads and waits until all of them are finished.
+	 * If the waiting is interrupted, the running loads are canceled
+	 * and an OperationCanceledException is thrown.
+	 */
+	private void loadProviders(List<ProviderLoad> providerLoads, boolean recursive, IProgressMonitor monitor) {
+		SubMonitor progress = SubMonitor.convert(monitor, providerLoads.size() * PROVIDER_WORK);
+		// the map is accessed by different threads, this is safe as long as the providers refer to disjoint projects
+		Map<String, ProjectSetEntry> synchronizedLoadedEntries = Collections.synchronizedMap(loadedEntries);
+
+		Iterator<ProviderLoad> providerLoadIterator = providerLoads.iterator();
+		while (providerLoadIterator.hasNext()) {
+			providerLoadIterator.next().monitor.setLoadMonitor(monitor);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(providerLoads.size(), MAXIMUM_THREADS), new LoaderThreadFactory());
+		try {
+			CompletionService<ProviderLoad> completionService = new ExecutorCompletionService<ProviderLoad>(executor);
+			providerLoadIterator = providerLoads.iterator();
+			while (providerLoadIterator.hasNext()) {
+				ProviderLoad providerLoad = providerLoadIterator.next();
+				completionService.submit(providerLoad.createTask(recursive, synchronizedLoadedEntries), providerLoad);
+			}
+
+			int finished = 0;
+			while (finished < providerLoads.size()) {
+				progress.subTask(getRunningProviders(providerLoads));
+				if (completionService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS) != null) {
+					finished++;
+				}
+				reportProgress(providerLoads, progress);
+				if (monitor.isCanceled()) {
+					// Preserve original behavior where cancel only stops loading the projects
+					// from the current providers, but loading of the project set continues
+					cancelRunning(providerLoads);
+					monitor.setCanceled(false);
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelRunning(providerLoads);
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Reports the work done by the providers since the last call
+	 */
+	private void reportProgress(List<ProviderLoad> providerLoads, SubMonitor progress) {
+		Iterator<ProviderLoad> providerLoadIterator = providerLoads.iterator();
+		while (providerLoadIterator.hasNext()) {
+			ProviderLoad providerLoad = providerLoadIterator.next();
+			int work = providerLoad.isFinished() ? PROVIDER_WORK : providerLoad.monitor.getWork(PROVIDER_WORK);
+			if (work > providerLoad.reportedWork) {
+				progress.worked(work - providerLoad.reportedWork);
+				providerLoad.reportedWork = work;
+			}
+		}
+	}
+
+	private String getRunningProviders(List<ProviderLoad> providerLoads) {
+		StringBuffer providers = new StringBuffer();
+		Iterator<ProviderLoad> providerLoadIterator = providerLoads.iterator();
+		while (providerLoadIterator.hasNext()) {
+			ProviderLoad providerLoad = providerLoadIterator.next();
+			if (providerLoad.isRunning()) {
+				if (providers.length() > 0) {
+					providers.append(", "); //$NON-NLS-1$
+				}
+				providers.append(providerLoad.provider);
+			}
+		}
+		return MessageFormat.format(Messages.getString("ProjectSet.Loading_project_sets_for_provider__{0}_3"), new Object[] {providers.toString()}); //$NON-NLS-1$
+	}
+
+	private void cancelRunning(List<ProviderLoad> providerLoads) {
+		Iterator<ProviderLoad> providerLoadIterator = providerLoads.iterator();
+		while (providerLoadIterator.hasNext()) {
+			ProviderLoad providerLoad = providerLoadIterator.next();
+			if (providerLoad.isRunning()) {
+				providerLoad.monitor.setCanceled(true);
+			}
+		}
+	}
+
+	/**
+	 * The load of the entries of one provider
+	 */
+	private class ProviderLoad {
+
+		private final String provider;
+		private final List<ProjectSetEntry> psEntryList;
+		private final LoadContext loadContext = new LoadContext();
+		private final ProviderMonitor monitor = new ProviderMonitor();
+
+		private volatile boolean running = false;
+		private volatile boolean finished = false;
+		private volatile IProject[] loadedProjects = new IProject[0];
+		private int reportedWork = 0; // work reported to the monitor of the load, only used by the calling thread
+
+		public ProviderLoad(String provider, List<ProjectSetEntry> psEntryList) {
+			super();
+			this.provider = provider;
+			this.psEntryList = psEntryList;
+		}
+
+		public boolean isRunning() {
+			return running;
+		}
+
+		public boolean isFinished() {
+			return finished;
+		}
+
+		public Runnable createTask(final boolean recursive, final Map<String, ProjectSetEntry> synchronizedLoadedEntries) {
+			return new Runnable() {
+				public void run() {
+					running = true;
+					try {
+						loadedProjects = projectSet.addToWorkspace(loadContext, monitor, recursive, synchronizedLoadedEntries, provider, psEntryList);
+					} catch (RuntimeException e) {
+						String errorMessage = Messages.getString("ProjectSet.Error_while_loading_project_set"); //$NON-NLS-1$
+						loadContext.reportStatus(new Status(IStatus.ERROR, ProjectSetPlugin.PLUGIN_ID, IStatus.OK, errorMessage, e));
+					} finally {
+						running = false;
+						finished = true;
+					}
+				}
+			};
+		}
+
+		public void reportStatuses() {
+			Iterator<IStatus> statusIterator = new ArrayList<IStatus>(loadContext.statuses).iterator();
+			while (statusIterator.hasNext()) {
+				context.reportStatus(statusIterator.next());
+			}
+		}
+	}
+
+	/**
+	 * The monitor of a provider load, records the work done by the provider
+	 * and is canceled if it is canceled itself or if the monitor of the load
+	 * is canceled. Nested beginTask calls (e.g. by SubMonitor.convert) are ignored.
+	 */
+	private static class ProviderMonitor extends NullProgressMonitor {
+
+		private volatile IProgressMonitor loadMonitor;
+		private int totalWork = 0;
+		private double work = 0;
+
+		public void setLoadMonitor(IProgressMonitor loadMonitor) {
+			this.loadMonitor = loadMonitor;
+		}
+
+		public synchronized void beginTask(String name, int totalWork) {
+			if (this.totalWork == 0) {
+				this.totalWork = totalWork;
+			}
+		}
+
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		public synchronized void internalWorked(double work) {
+			this.work += work;
+		}
+
+		/**
+		 * Returns the work done, scaled to the given total work
+		 */
+		public synchronized int getWork(int scaledTotalWork) {
+			if (totalWork <= 0) {
+				return 0;
+			}
+			return (int) Math.min(scaledTotalWork, work * scaledTotalWork / totalWork);
+		}
+
+		public boolean isCanceled() {
+			IProgressMonitor monitor = loadMonitor;
+			return super.isCanceled() || ((monitor != null) && monitor.isCanceled());
+		}
+	}
+
+	/**
+	 * The context of a provider load, collects the reported statuses and
+	 * shares the ProjectSetSerializationContext of the context of the load
+	 */
+	private class LoadContext extends ProjectSetContext {
+
+		private final List<IStatus> statuses = Collections.synchronizedList(new ArrayList<IStatus>());
+
+		public ProjectSetSerializationContext getProjectSetSerializationContext(String projectSetFilename) {
+			synchronized (context) {
+				return context.getProjectSetSerializationContext(projectSetFilename);
+			}
+		}
+
+		public void reportStatus(IStatus status) {
+			statuses.add(status);
+		}
+	}
+
+	private static class LoaderThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Project Set Loader " + threadNumber.getAndIncrement()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
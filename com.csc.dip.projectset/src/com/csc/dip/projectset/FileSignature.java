@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The size, the time stamp and the content hash of a local file,
+ * used to check if a persisted snapshot of a file is still valid.
+ *
+ * The content hash is only computed if it is needed to compare the file
+ * with a persisted snapshot or to persist a snapshot, otherwise the
+ * signature only contains the size and the time stamp (see sizeAndTimeStampOf).
+ */
+class FileSignature {
+
+	private static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	private final long length;
+	private final long lastModified;
+	private final byte[] hash; // null if not computed
+
+	public FileSignature(long length, long lastModified, byte[] hash) {
+		super();
+		this.length = length;
+		this.lastModified = lastModified;
+		this.hash = hash;
+	}
+
+	/**
+	 * Returns the signature of the file without content hash, null if the file does not exist
+	 */
+	public static FileSignature sizeAndTimeStampOf(File file) {
+		if ((file == null) || !file.isFile()) {
+			return null;
+		}
+		return new FileSignature(file.length(), file.lastModified(), null);
+	}
+
+	/**
+	 * Returns the signature of the file, null if the file does not exist or cannot be read
+	 */
+	public static FileSignature of(File file) {
+		if ((file == null) || !file.isFile()) {
+			return null;
+		}
+		long length = file.length();
+		long lastModified = file.lastModified();
+		try {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			InputStream inputStream = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[8192];
+				int read = inputStream.read(buffer);
+				while (read != -1) {
+					digest.update(buffer, 0, read);
+					read = inputStream.read(buffer);
+				}
+			} finally {
+				inputStream.close();
+			}
+			return new FileSignature(length, lastModified, digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns this signature with the content hash of the file, the hash is computed
+	 * if this signature has none. Returns null if the size or the time stamp of the
+	 * file differ from this signature or the file cannot be read.
+	 */
+	public FileSignature withHash(File file) {
+		if (hash != null) {
+			return matchesSizeAndTimeStamp(file) ? this : null;
+		}
+		FileSignature signature = of(file);
+		if ((signature == null) || (signature.length != length) || (signature.lastModified != lastModified)) {
+			return null;
+		}
+		return signature;
+	}
+
+	/**
+	 * Returns true if the signature contains the content hash
+	 */
+	public boolean hasHash() {
+		return hash != null;
+	}
+
+	/**
+	 * Returns true if the file exists and has the size and the time stamp of this signature
+	 * (the content is not compared)
+	 */
+	public boolean matchesSizeAndTimeStamp(File file) {
+		return (file != null) && file.isFile() && (file.length() == length) && (file.lastModified() == lastModified);
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public byte[] getHash() {
+		return hash;
+	}
+
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof FileSignature)) {
+			return false;
+		}
+		FileSignature signature = (FileSignature) object;
+		return (length == signature.length) &&
+			(lastModified == signature.lastModified) &&
+			Arrays.equals(hash, signature.hash);
+	}
+
+	public int hashCode() {
+		return Arrays.hashCode(hash);
+	}
+}
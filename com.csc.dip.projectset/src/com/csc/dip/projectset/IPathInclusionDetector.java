@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Detects project set entries with the same or nested resolved locations
+ * (see PathInclusionDetector and SortedPathInclusionDetector)
+ */
+public interface IPathInclusionDetector {
+
+	/**
+	 * Adds the resolved location of an entry
+	 */
+	void addPath(PathKey resolvedPath, ProjectSetEntry entry);
+
+	/**
+	 * Returns a map with key = project set entry and value = conflicting entries.
+	 * An entry conflicts with all entries whose location is an ancestor or
+	 * a descendant of its location and with all entries of other projects
+	 * with the same location.
+	 */
+	Map<ProjectSetEntry, Collection<ProjectSetEntry>> getConflicts();
+
+}
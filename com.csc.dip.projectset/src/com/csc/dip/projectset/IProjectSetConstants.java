@@ -31,6 +31,8 @@ public interface IProjectSetConstants {
 	// name for preferences
 	public static final String PSF_PATH_VARIABLES_PREFERENCE = "psfPathVariables"; //$NON-NLS-1$
 	public static final String REFRESH_BEFORE_LOADING_PREFERENCE = "refreshBeforeLoadingVariables"; //$NON-NLS-1$
+	public static final String CONCURRENT_LOADING_PREFERENCE = "concurrentLoading"; //$NON-NLS-1$
+	public static final String ASYNCHRONOUS_VALIDATION_PREFERENCE = "asynchronousValidation"; //$NON-NLS-1$
 
 	// marker ids
 	public static final String PSF_MARKER_ID = "com.csc.dip.projectset.PsfMarker"; //$NON-NLS-1$
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+public interface IProjectSetEntryVisitor {
+
+	/**
+	 * Called for every entry of a project set and its loaded
+	 * sub project sets (depth first, every entry only once).
+	 * 
+	 * @param entry the visited entry
+	 * @return true if the entries of the sub project set of the
+	 *         entry should be visited, false to skip them
+	 */
+	boolean visit(ProjectSetEntry entry);
+	
+}
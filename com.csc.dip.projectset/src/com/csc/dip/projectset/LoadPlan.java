@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The actions ProjectSet.addToWorkspace would perform for a project set,
+ * computed without changing the workspace (see ProjectSet.createLoadPlan).
+ *
+ * The actions are grouped by provider, in the order they would be performed.
+ */
+public class LoadPlan {
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private final ProjectSet projectSet;
+	private final boolean recursive;
+
+	// key = provider, value = actions for the provider
+	private Map<String, List<LoadPlanAction>> actionsByProvider = new LinkedHashMap<String, List<LoadPlanAction>>();
+
+	/**
+	 * Constructor for LoadPlan.
+	 */
+	public LoadPlan(ProjectSet projectSet, boolean recursive) {
+		super();
+		this.projectSet = projectSet;
+		this.recursive = recursive;
+	}
+
+	public ProjectSet getProjectSet() {
+		return projectSet;
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	public void addAction(LoadPlanAction action) {
+		String provider = action.getEntry().getProvider();
+		List<LoadPlanAction> actions = actionsByProvider.get(provider);
+		if (actions == null) {
+			actions = new ArrayList<LoadPlanAction>();
+			actionsByProvider.put(provider, actions);
+		}
+		actions.add(action);
+	}
+
+	/**
+	 * Returns the providers of the planned actions
+	 */
+	public List<String> getProviders() {
+		return new ArrayList<String>(actionsByProvider.keySet());
+	}
+
+	/**
+	 * Returns the planned actions for the provider
+	 */
+	public List<LoadPlanAction> getActions(String provider) {
+		List<LoadPlanAction> actions = actionsByProvider.get(provider);
+		if (actions == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(actions);
+	}
+
+	/**
+	 * Returns all planned actions
+	 */
+	public List<LoadPlanAction> getActions() {
+		List<LoadPlanAction> allActions = new ArrayList<LoadPlanAction>();
+		Iterator<List<LoadPlanAction>> actionsIterator = actionsByProvider.values().iterator();
+		while (actionsIterator.hasNext()) {
+			allActions.addAll(actionsIterator.next());
+		}
+		return allActions;
+	}
+
+	/**
+	 * Returns true if any planned action has a conflict
+	 */
+	public boolean hasConflicts() {
+		Iterator<LoadPlanAction> actionIterator = getActions().iterator();
+		while (actionIterator.hasNext()) {
+			if (!actionIterator.next().getConflicts().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the plan as JSON
+	 */
+	public String toJSON() {
+		StringWriter writer = new StringWriter();
+		try {
+			writeJSON(writer);
+		} catch (IOException e) {
+			// not thrown by StringWriter
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the plan as JSON
+	 */
+	public void writeJSON(Writer writer) throws IOException {
+		writer.write("{"); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, 1, "projectSet", getProjectSetName(projectSet)); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, 1, "recursive", recursive); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeIndent(writer, 1);
+		writer.write("\"providers\": ["); //$NON-NLS-1$
+		Iterator<Map.Entry<String, List<LoadPlanAction>>> mapEntryIterator = actionsByProvider.entrySet().iterator();
+		while (mapEntryIterator.hasNext()) {
+			Map.Entry<String, List<LoadPlanAction>> mapEntry = mapEntryIterator.next();
+			writer.write(LINE_SEPARATOR);
+			writeIndent(writer, 2);
+			writer.write("{"); //$NON-NLS-1$
+			writer.write(LINE_SEPARATOR);
+			writeProperty(writer, 3, "provider", mapEntry.getKey()); //$NON-NLS-1$
+			writer.write(","); //$NON-NLS-1$
+			writer.write(LINE_SEPARATOR);
+			writeIndent(writer, 3);
+			writer.write("\"actions\": ["); //$NON-NLS-1$
+			Iterator<LoadPlanAction> actionIterator = mapEntry.getValue().iterator();
+			while (actionIterator.hasNext()) {
+				writer.write(LINE_SEPARATOR);
+				writeAction(writer, 4, actionIterator.next());
+				if (actionIterator.hasNext()) {
+					writer.write(","); //$NON-NLS-1$
+				}
+			}
+			writer.write(LINE_SEPARATOR);
+			writeIndent(writer, 3);
+			writer.write("]"); //$NON-NLS-1$
+			writer.write(LINE_SEPARATOR);
+			writeIndent(writer, 2);
+			writer.write("}"); //$NON-NLS-1$
+			if (mapEntryIterator.hasNext()) {
+				writer.write(","); //$NON-NLS-1$
+			}
+		}
+		writer.write(LINE_SEPARATOR);
+		writeIndent(writer, 1);
+		writer.write("]"); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writer.write("}"); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writer.flush();
+	}
+
+	private void writeAction(Writer writer, int indent, LoadPlanAction action) throws IOException {
+		ProjectSetEntry entry = action.getEntry();
+		writeIndent(writer, indent);
+		writer.write("{"); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "action", action.getActionName()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "level", action.getLevel()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "projectName", entry.getProjectName()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "projectReference", entry.getProjectReference()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "projectSet", getProjectSetName(entry.getProjectSet())); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "state", action.getStateName()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "preferredLocation", entry.getUnresolvedPreferredLocation()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "resolvedLocation", action.getResolvedLocation()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "createEmptyProject", action.isCreateEmptyProject()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeProperty(writer, indent + 1, "subProjectSetUnknown", action.isSubProjectSetUnknown()); //$NON-NLS-1$
+		writer.write(","); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeIndent(writer, indent + 1);
+		writer.write("\"conflicts\": ["); //$NON-NLS-1$
+		Iterator<String> conflictIterator = action.getConflicts().iterator();
+		while (conflictIterator.hasNext()) {
+			writeString(writer, conflictIterator.next());
+			if (conflictIterator.hasNext()) {
+				writer.write(", "); //$NON-NLS-1$
+			}
+		}
+		writer.write("]"); //$NON-NLS-1$
+		writer.write(LINE_SEPARATOR);
+		writeIndent(writer, indent);
+		writer.write("}"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the location of the project set file,
+	 * the workspace path if the file has no location
+	 */
+	static String getProjectSetName(ProjectSet projectSet) {
+		if ((projectSet == null) || (projectSet.getProjectSetFile() == null)) {
+			return ""; //$NON-NLS-1$
+		}
+		if (projectSet.getProjectSetFile().getLocation() == null) {
+			return projectSet.getProjectSetFile().getFullPath().toString();
+		}
+		return projectSet.getProjectSetFilename();
+	}
+
+	private void writeProperty(Writer writer, int indent, String name, String value) throws IOException {
+		writeIndent(writer, indent);
+		writeString(writer, name);
+		writer.write(": "); //$NON-NLS-1$
+		if (value == null) {
+			writer.write("null"); //$NON-NLS-1$
+		} else {
+			writeString(writer, value);
+		}
+	}
+
+	private void writeProperty(Writer writer, int indent, String name, boolean value) throws IOException {
+		writeIndent(writer, indent);
+		writeString(writer, name);
+		writer.write(": "); //$NON-NLS-1$
+		writer.write(Boolean.toString(value));
+	}
+
+	private void writeProperty(Writer writer, int indent, String name, int value) throws IOException {
+		writeIndent(writer, indent);
+		writeString(writer, name);
+		writer.write(": "); //$NON-NLS-1$
+		writer.write(Integer.toString(value));
+	}
+
+	private void writeIndent(Writer writer, int indent) throws IOException {
+		for (int i = 0; i < indent; i++) {
+			writer.write("  "); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes a JSON string, quotes, backslashes and control characters are escaped
+	 */
+	private void writeString(Writer writer, String value) throws IOException {
+		writer.write('"');
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '"' :
+					writer.write("\\\""); //$NON-NLS-1$
+					break;
+				case '\\' :
+					writer.write("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n' :
+					writer.write("\\n"); //$NON-NLS-1$
+					break;
+				case '\r' :
+					writer.write("\\r"); //$NON-NLS-1$
+					break;
+				case '\t' :
+					writer.write("\\t"); //$NON-NLS-1$
+					break;
+				default :
+					if (ch < 0x20) {
+						String hex = Integer.toHexString(ch);
+						writer.write("\\u"); //$NON-NLS-1$
+						for (int j = hex.length(); j < 4; j++) {
+							writer.write('0');
+						}
+						writer.write(hex);
+					} else {
+						writer.write(ch);
+					}
+			}
+		}
+		writer.write('"');
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The planned action for one project set entry in a LoadPlan
+ */
+public class LoadPlanAction {
+
+	// action types
+	public static final int ACTION_LOAD = 0;
+	public static final int ACTION_SKIP_LOADED = 1;
+	public static final int ACTION_SKIP_PROBLEMATIC = 2;
+	public static final int ACTION_SKIP_UNSUPPORTED_PROVIDER = 3;
+
+	private static final String[] ACTION_NAMES = {"load", "skipLoaded", "skipProblematic", "skipUnsupportedProvider"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	private static final String[] STATE_NAMES = {"loaded", "notLoaded", "loadedNotShared", "loadedDifferent"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private final ProjectSetEntry entry;
+	private final int level;
+	private final int action;
+
+	private boolean createEmptyProject = false;
+	private String resolvedLocation;
+	private boolean subProjectSetUnknown = false;
+	private List<String> conflicts = new ArrayList<String>();
+
+	/**
+	 * Constructor for LoadPlanAction.
+	 *
+	 * @param entry the entry to be loaded or skipped
+	 * @param level the level of the project set that contains the entry
+	 *        (0 for the project set that is loaded, 1 for its sub project sets, ...)
+	 * @param action one of the ACTION_* constants
+	 */
+	public LoadPlanAction(ProjectSetEntry entry, int level, int action) {
+		super();
+		this.entry = entry;
+		this.level = level;
+		this.action = action;
+	}
+
+	public ProjectSetEntry getEntry() {
+		return entry;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the action type.
+	 * Possible return values:
+	 *
+	 * ACTION_LOAD
+	 * ACTION_SKIP_LOADED
+	 * ACTION_SKIP_PROBLEMATIC
+	 * ACTION_SKIP_UNSUPPORTED_PROVIDER
+	 */
+	public int getAction() {
+		return action;
+	}
+
+	/**
+	 * Returns the name of the action type as used in the JSON export
+	 */
+	public String getActionName() {
+		return ACTION_NAMES[action];
+	}
+
+	/**
+	 * Returns the name of the state of the entry before loading as used in the JSON export
+	 */
+	public String getStateName() {
+		return STATE_NAMES[entry.getState()];
+	}
+
+	/**
+	 * Returns true if an empty project is created at the preferred location before loading
+	 */
+	public boolean isCreateEmptyProject() {
+		return createEmptyProject;
+	}
+
+	public void setCreateEmptyProject(boolean createEmptyProject) {
+		this.createEmptyProject = createEmptyProject;
+	}
+
+	/**
+	 * Returns the resolved preferred location or null if the entry
+	 * has no preferred location or a path variable is undefined
+	 */
+	public String getResolvedLocation() {
+		return resolvedLocation;
+	}
+
+	public void setResolvedLocation(String resolvedLocation) {
+		this.resolvedLocation = resolvedLocation;
+	}
+
+	/**
+	 * Returns true if the project is not loaded in the version of the entry yet,
+	 * so a sub project set of the project is only known after loading
+	 * (the plan does not contain its entries)
+	 */
+	public boolean isSubProjectSetUnknown() {
+		return subProjectSetUnknown;
+	}
+
+	public void setSubProjectSetUnknown(boolean subProjectSetUnknown) {
+		this.subProjectSetUnknown = subProjectSetUnknown;
+	}
+
+	/**
+	 * Returns the descriptions of the conflicts expected for the action
+	 */
+	public List<String> getConflicts() {
+		return Collections.unmodifiableList(conflicts);
+	}
+
+	public void addConflict(String conflict) {
+		conflicts.add(conflict);
+	}
+}
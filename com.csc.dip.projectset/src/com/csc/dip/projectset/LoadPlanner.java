@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is used by ProjectSet to create a LoadPlan.
+ *
+ * It follows the steps of ProjectSet.addToWorkspace (pruning of loaded
+ * entries, creation of empty projects at the preferred locations, the check
+ * for problematic projects (see ProjectSet.getLoadProblem) and the level by
+ * level load of sub project sets) without changing the workspace.
+ */
+class LoadPlanner {
+
+	private final ProjectSet projectSet;
+	private final boolean recursive;
+	private final LoadPlan plan;
+
+	// key = project name, value = entry that is loaded by the plan
+	private final Map<String, ProjectSetEntry> loadedEntries = new HashMap<String, ProjectSetEntry>();
+
+	private final Map<String, String> cachedPathVariableMap = PreferredLocationsUtil.getPathVariableSnapshot().getPathVariableMap();
+
+	/**
+	 * Constructor for LoadPlanner.
+	 */
+	public LoadPlanner(ProjectSet projectSet, boolean recursive) {
+		super();
+		this.projectSet = projectSet;
+		this.recursive = recursive;
+		this.plan = new LoadPlan(projectSet, recursive);
+	}
+
+	/**
+	 * Creates the plan for the entries listed in projectNames (all entries if null)
+	 */
+	public LoadPlan createPlan(List<String> projectNames) {
+		Map<String, List<ProjectSetEntry>> map;
+		if (projectNames == null) {
+			map = projectSet.getProjectSetMap();
+		} else {
+			map = projectSet.getProjectSetMap(projectNames);
+		}
+
+		int level = 0;
+		List<ProjectSetEntry> plannedEntries = planLevel(map, level);
+		while (recursive && !plannedEntries.isEmpty()) {
+			level++;
+			// key = provider, value = entries of the next level
+			Map<String, List<ProjectSetEntry>> levelMap = new LinkedHashMap<String, List<ProjectSetEntry>>();
+			// key = project name, value = entry of the project in the next level
+			Map<String, ProjectSetEntry> levelEntries = new HashMap<String, ProjectSetEntry>();
+			Iterator<ProjectSetEntry> entryIterator = plannedEntries.iterator();
+			while (entryIterator.hasNext()) {
+				ProjectSet subPS = entryIterator.next().getSubProjectSet();
+				if (subPS != null) {
+					addToLevel(subPS.getProjectSetEntries(), level, levelEntries, levelMap);
+				}
+			}
+			plannedEntries = planLevel(levelMap, level);
+		}
+		return plan;
+	}
+
+	/**
+	 * Adds the entries to the entries of a level, like ProjectSet.addSubProjectSetsForLoaded
+	 * entries of projects that are already in the level are skipped
+	 */
+	private void addToLevel(ProjectSetEntry[] entries, int level, Map<String, ProjectSetEntry> levelEntries, Map<String, List<ProjectSetEntry>> levelMap) {
+		for (int i = 0; i < entries.length; i++) {
+			ProjectSetEntry psEntry = entries[i];
+			String projectName = psEntry.getProjectName();
+			ProjectSetEntry levelPsEntry = levelEntries.get(projectName);
+			if (levelPsEntry != null) {
+				addSkipLoadedAction(psEntry, level, levelPsEntry);
+				continue;
+			}
+			levelEntries.put(projectName, psEntry);
+			List<ProjectSetEntry> referencesForProvider = levelMap.get(psEntry.getProvider());
+			if (referencesForProvider == null) {
+				referencesForProvider = new ArrayList<ProjectSetEntry>();
+				levelMap.put(psEntry.getProvider(), referencesForProvider);
+			}
+			referencesForProvider.add(psEntry);
+		}
+	}
+
+	/**
+	 * Plans the entries of one level, returns the entries that are loaded
+	 * and whose sub project set is known.
+	 */
+	private List<ProjectSetEntry> planLevel(Map<String, List<ProjectSetEntry>> map, int level) {
+		List<ProjectSetEntry> plannedEntries = new ArrayList<ProjectSetEntry>();
+
+		Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapIterator = map.entrySet().iterator();
+		while (mapIterator.hasNext()) {
+			Map.Entry<String, List<ProjectSetEntry>> mapEntry = mapIterator.next();
+			String provider = mapEntry.getKey();
+
+			if (!ProjectSetUtil.isProviderSupported(provider)) {
+				Iterator<ProjectSetEntry> entryIterator = mapEntry.getValue().iterator();
+				while (entryIterator.hasNext()) {
+					LoadPlanAction action = new LoadPlanAction(entryIterator.next(), level, LoadPlanAction.ACTION_SKIP_UNSUPPORTED_PROVIDER);
+					action.addConflict(MessageFormat.format(Messages.getString("UnknownProjectReferenceAnalyser.Team_provider_{0}_not_supported_1"), new Object[] {provider})); //$NON-NLS-1$
+					plan.addAction(action);
+				}
+				continue;
+			}
+
+			List<LoadPlanAction> loadActions = new ArrayList<LoadPlanAction>();
+			String undefinedPathVariableProject = null;
+			Iterator<ProjectSetEntry> entryIterator = mapEntry.getValue().iterator();
+			while (entryIterator.hasNext()) {
+				ProjectSetEntry psEntry = entryIterator.next();
+				String projectName = psEntry.getProjectName();
+
+				// pruned entries
+				ProjectSetEntry loadedPsEntry = loadedEntries.get(projectName);
+				if (loadedPsEntry != null) {
+					addSkipLoadedAction(psEntry, level, loadedPsEntry);
+					continue;
+				}
+
+				// problematic projects
+				String loadProblem = ProjectSet.getLoadProblem(psEntry);
+				if (loadProblem != null) {
+					LoadPlanAction action = new LoadPlanAction(psEntry, level, LoadPlanAction.ACTION_SKIP_PROBLEMATIC);
+					action.addConflict(loadProblem);
+					plan.addAction(action);
+					continue;
+				}
+
+				LoadPlanAction action = new LoadPlanAction(psEntry, level, LoadPlanAction.ACTION_LOAD);
+				String unresolvedPreferredLocation = psEntry.getUnresolvedPreferredLocation();
+				if ((unresolvedPreferredLocation != null) && (unresolvedPreferredLocation.length() > 0)) {
+					action.setResolvedLocation(psEntry.getResolvedPreferredLocation(cachedPathVariableMap));
+					if (psEntry.getState() == ProjectSetEntry.STATE_NOT_LOADED) {
+						action.setCreateEmptyProject(true);
+						if ((action.getResolvedLocation() == null) && (undefinedPathVariableProject == null)) {
+							undefinedPathVariableProject = projectName;
+							action.addConflict(Messages.getString("ProjectSet.Undefined_path_variable")); //$NON-NLS-1$
+						}
+					}
+				}
+				addErrors(action);
+				if (recursive) {
+					action.setSubProjectSetUnknown(psEntry.getState() != ProjectSetEntry.STATE_LOADED);
+				}
+				loadActions.add(action);
+				plan.addAction(action);
+			}
+
+			// the load of the provider stops at the first undefined path variable
+			Iterator<LoadPlanAction> actionIterator = loadActions.iterator();
+			while (actionIterator.hasNext()) {
+				LoadPlanAction action = actionIterator.next();
+				if (undefinedPathVariableProject == null) {
+					loadedEntries.put(action.getEntry().getProjectName(), action.getEntry());
+					if (recursive && !action.isSubProjectSetUnknown()) {
+						plannedEntries.add(action.getEntry());
+					}
+				} else if (!undefinedPathVariableProject.equals(action.getEntry().getProjectName())) {
+					action.addConflict(MessageFormat.format(Messages.getString("LoadPlan.Not_loaded_because_of_undefined_path_variable_of_{0}"), new Object[] {undefinedPathVariableProject})); //$NON-NLS-1$
+				}
+			}
+		}
+		return plannedEntries;
+	}
+
+	private void addSkipLoadedAction(ProjectSetEntry psEntry, int level, ProjectSetEntry loadedPsEntry) {
+		LoadPlanAction action = new LoadPlanAction(psEntry, level, LoadPlanAction.ACTION_SKIP_LOADED);
+		if (!psEntry.contentEqualsIgnorePreferredLocation(loadedPsEntry)) {
+			action.addConflict(MessageFormat.format(Messages.getString("LoadPlan.Loaded_in_a_different_version_from_{0}"), new Object[] {LoadPlan.getProjectSetName(loadedPsEntry.getProjectSet())})); //$NON-NLS-1$
+		}
+		plan.addAction(action);
+	}
+
+	/**
+	 * Adds the errors found by ProjectSet.updateErrors for the entry as conflicts
+	 */
+	private void addErrors(LoadPlanAction action) {
+		ProjectSetEntry psEntry = action.getEntry();
+		for (int errorType = 0; errorType < ProjectSetEntry.NUMBER_OF_ERROR_TYPES; errorType++) {
+			int errorState = psEntry.getErrorState(errorType);
+			if ((errorState == ProjectSetEntry.ERROR_STATE_ERROR) || (errorState == ProjectSetEntry.ERROR_STATE_ERROR_ALSO_IN_SUB_PS)) {
+				String errorDescription = psEntry.getErrorDescription(errorType);
+				if (errorDescription != null) {
+					action.addConflict(errorDescription);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+/**
+ * Holds the parts of a project reference string of a team provider.
+ *
+ * Each part is retrieved once from the project reference analyser
+ * when it is requested the first time, later calls return the
+ * remembered value. Parts that are never requested are never parsed,
+ * so a reference that the analyser can only partly parse behaves
+ * the same as when calling the analyser directly.
+ */
+public class ParsedProjectReference {
+
+	private final String provider;
+	private final String projectReference;
+	private final IProjectReferenceAnalyser analyser;
+
+	private String projectName;
+	private String tag;
+	private String location;
+
+	/**
+	 * Constructor for ParsedProjectReference.
+	 */
+	public ParsedProjectReference(String provider, String projectReference) {
+		super();
+		this.provider = provider;
+		this.projectReference = projectReference;
+		this.analyser = ProjectSetUtil.getProjectReferenceAnalyser(provider);
+	}
+
+	/**
+	 * Returns the team provider
+	 */
+	public String getProvider() {
+		return provider;
+	}
+
+	/**
+	 * Returns the unparsed project reference
+	 */
+	public String getProjectReference() {
+		return projectReference;
+	}
+
+	/**
+	 * Returns the project reference analyser for the provider
+	 */
+	public IProjectReferenceAnalyser getProjectReferenceAnalyser() {
+		return analyser;
+	}
+
+	/**
+	 * Returns the project name retrieved from the project reference
+	 */
+	public String getProjectName() {
+		if (projectName == null) {
+			projectName = analyser.getProjectName(projectReference);
+		}
+		return projectName;
+	}
+
+	/**
+	 * Returns the tag retrieved from the project reference
+	 */
+	public String getTag() {
+		if (tag == null) {
+			tag = analyser.getTag(projectReference);
+		}
+		return tag;
+	}
+
+	/**
+	 * Returns the server location retrieved from the project reference
+	 */
+	public String getLocation() {
+		if (location == null) {
+			location = analyser.getLocation(projectReference);
+		}
+		return location;
+	}
+}
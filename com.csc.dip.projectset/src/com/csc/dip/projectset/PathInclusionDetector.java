@@ -15,7 +15,6 @@
  ******************************************************************************/
 package com.csc.dip.projectset;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -31,20 +30,20 @@ import java.util.Stack;
  *
  *	This class is used by ProjectSet to detect path inclusions of project set entries 
  */
-public class PathInclusionDetector {
+public class PathInclusionDetector implements IPathInclusionDetector {
 	public static class PathNode {
 		
 		// contains an entry if its path is complete to this node
 		private Set<ProjectSetEntry> projectSetEntries = new HashSet<ProjectSetEntry>();
 		
-		// key = File, value = PathNode  
-		private HashMap<File, PathNode> children = new HashMap<File, PathNode>();
+		// key = PathKey, value = PathNode  
+		private HashMap<PathKey, PathNode> children = new HashMap<PathKey, PathNode>();
 		
 		private boolean hasLocalConflict = false;
 		
 		private String firstProjectName = null;
 		
-		public PathNode addChild(File path) {
+		public PathNode addChild(PathKey path) {
 			PathNode childNode = children.get(path);
 			if(childNode == null) {
 				childNode = new PathNode();
@@ -82,23 +81,23 @@ public class PathInclusionDetector {
 	private Map<ProjectSetEntry, Collection<ProjectSetEntry>> conflictMap;
 	private PathNode root = new PathNode();
 	
-	public void addPath(File resolvedPath, ProjectSetEntry entry) {
-		List<File> splitPath = splitPath(resolvedPath);
+	public void addPath(PathKey resolvedPath, ProjectSetEntry entry) {
+		List<PathKey> splitPath = splitPath(resolvedPath);
 		PathNode currentNode = root;
-		for(Iterator<File> it = splitPath.iterator(); it.hasNext();) {
-			File path = it.next();
+		for(Iterator<PathKey> it = splitPath.iterator(); it.hasNext();) {
+			PathKey path = it.next();
 			currentNode = currentNode.addChild(path);
 		}
 		// current node is "endpoint" of path, thus add entry
 		currentNode.addEntry(entry);
 	}
 	
-	public List<File> splitPath(File path) {
-		List<File> list = new ArrayList<File>();
-		File currentPath = path;
+	public List<PathKey> splitPath(PathKey path) {
+		List<PathKey> list = new ArrayList<PathKey>();
+		PathKey currentPath = path;
 		while(currentPath != null) {
 			list.add(0, currentPath);
-			currentPath = currentPath.getParentFile();
+			currentPath = currentPath.getParent();
 		}
 		return list;
 	}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+
+/**
+ * A normalized local path used to compare locations (like resolved preferred
+ * locations) without creating java.io.File objects for each comparison.
+ *
+ * Two keys are equal if the paths are equal as java.io.File: the path is
+ * normalized like java.io.File normalizes it (separators) and the case is
+ * folded if the file system ignores the case (like on Windows).
+ * Paths that are already normalized (the usual case) are not copied.
+ */
+public final class PathKey {
+
+	// true if java.io.File ignores the case (like on Windows)
+	private static final boolean CASE_INSENSITIVE = new File("a").equals(new File("A")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final boolean WINDOWS_SEPARATORS = (File.separatorChar == '\\');
+
+	private final String path; // normalized path
+	private final String key; // normalized path with folded case
+
+	private PathKey(String path) {
+		super();
+		this.path = normalize(path);
+		this.key = CASE_INSENSITIVE ? foldCase(this.path) : this.path;
+	}
+
+	/**
+	 * Returns the key of the path, null if path is null
+	 */
+	public static PathKey valueOf(String path) {
+		return (path == null) ? null : new PathKey(path);
+	}
+
+	/**
+	 * Returns the normalized path like java.io.File.getPath()
+	 */
+	private static String normalize(String path) {
+		int length = path.length();
+		char previous = 0;
+		for (int i = 0; i < length; i++) {
+			char c = path.charAt(i);
+			if ((c == '/') && WINDOWS_SEPARATORS) {
+				return new File(path).getPath();
+			}
+			if ((c == File.separatorChar) && (previous == File.separatorChar) && (!WINDOWS_SEPARATORS || (i > 1))) {
+				return new File(path).getPath();
+			}
+			if ((c == ':') && WINDOWS_SEPARATORS && (i > 1)) {
+				return new File(path).getPath();
+			}
+			previous = c;
+		}
+		if ((previous == File.separatorChar) && ((length > 1) || WINDOWS_SEPARATORS)) {
+			return new File(path).getPath();
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the path with the case folded like String.compareToIgnoreCase compares it
+	 */
+	private static String foldCase(String path) {
+		char[] chars = path.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the normalized path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the normalized path with folded case, the keys of equal paths are equal
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the key of the parent path (like java.io.File.getParentFile()),
+	 * null if the path has no parent
+	 */
+	public PathKey getParent() {
+		String parentPath = new File(path).getParent();
+		return (parentPath == null) ? null : new PathKey(parentPath);
+	}
+
+	/**
+	 * Returns the path as file
+	 */
+	public File toFile() {
+		return new File(path);
+	}
+
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof PathKey)) {
+			return false;
+		}
+		return key.equals(((PathKey) object).key);
+	}
+
+	public int hashCode() {
+		return key.hashCode();
+	}
+
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+
+/**
+ * Caches the snapshot of the project set entry independent path variables.
+ *
+ * The snapshot is created on first use and created again (with a new version)
+ * after the path variable preferences changed.
+ */
+public class PathVariableCache implements IPreferenceChangeListener {
+
+	// incremented whenever the path variable preferences change
+	private AtomicLong version = new AtomicLong();
+
+	private volatile PathVariableSnapshot snapshot;
+
+	/**
+	 * Starts listening to changes of the path variable preferences
+	 */
+	public void startup() {
+		getPreferences().addPreferenceChangeListener(this);
+	}
+
+	/**
+	 * Stops listening and removes the snapshot
+	 */
+	public void shutdown() {
+		getPreferences().removePreferenceChangeListener(this);
+		invalidate();
+	}
+
+	private IEclipsePreferences getPreferences() {
+		return InstanceScope.INSTANCE.getNode(ProjectSetPlugin.PLUGIN_ID);
+	}
+
+	/**
+	 * Returns the snapshot of the current path variables
+	 */
+	public PathVariableSnapshot getSnapshot() {
+		PathVariableSnapshot currentSnapshot = snapshot;
+		if (currentSnapshot == null) {
+			long versionBefore = version.get();
+			currentSnapshot = createSnapshot(versionBefore);
+			synchronized (this) {
+				// don't keep a snapshot of variables that changed while it was created
+				if (version.get() == versionBefore) {
+					snapshot = currentSnapshot;
+				}
+			}
+		}
+		return currentSnapshot;
+	}
+
+	/**
+	 * Returns the version of the current path variables
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Removes the snapshot, the next snapshot gets a new version
+	 */
+	public synchronized void invalidate() {
+		version.incrementAndGet();
+		snapshot = null;
+	}
+
+	/**
+	 * Creates a snapshot of the path variables read from the preferences
+	 */
+	public static PathVariableSnapshot createSnapshot(long version) {
+		Map<String, String> pathVariableMap = new HashMap<String, String>();
+		PreferredLocationsUtil.addUserDefinedPathVariables(pathVariableMap);
+		PreferredLocationsUtil.addGlobalImplizitPathVariables(pathVariableMap);
+		return new PathVariableSnapshot(pathVariableMap, version);
+	}
+
+	public void preferenceChange(PreferenceChangeEvent event) {
+		if (IProjectSetConstants.PSF_PATH_VARIABLES_PREFERENCE.equals(event.getKey())) {
+			invalidate();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the project set entry independent path variables
+ * (user defined and global implicit path variables).
+ *
+ * The version of the snapshot is incremented whenever the path variable
+ * preferences change, so values computed with the variables of a snapshot
+ * (like resolved preferred locations) can be invalidated by comparing the version.
+ */
+public final class PathVariableSnapshot {
+
+	private final Map<String, String> pathVariableMap;
+	private final long version;
+
+	/**
+	 * Constructor for PathVariableSnapshot, the map is copied.
+	 */
+	public PathVariableSnapshot(Map<String, String> pathVariableMap, long version) {
+		super();
+		this.pathVariableMap = Collections.unmodifiableMap(new HashMap<String, String>(pathVariableMap));
+		this.version = version;
+	}
+
+	/**
+	 * Returns the (unmodifiable) map where
+	 *   key = variable name
+	 *   value = path
+	 */
+	public Map<String, String> getPathVariableMap() {
+		return pathVariableMap;
+	}
+
+	/**
+	 * Returns the version of the path variables
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
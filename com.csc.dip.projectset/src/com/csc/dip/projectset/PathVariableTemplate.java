@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.Path;
+
+/**
+ * A preferred location parsed into literal and path variable segments
+ * (see PreferredLocationsUtil.resolve).
+ *
+ * Each distinct unresolved location is parsed only once, the templates are
+ * immutable and cached, so they can be resolved by several threads.
+ */
+class PathVariableTemplate {
+
+	// maximum number of cached templates, the cache is cleared if it grows beyond
+	private static final int MAX_CACHE_SIZE = 1000;
+
+	// key = unresolved location, value = parsed template
+	private static final Map<String, PathVariableTemplate> templates = new ConcurrentHashMap<String, PathVariableTemplate>();
+
+	// literal text or (trimmed) variable names, variables[i] is true if segments[i] is a variable name
+	private final String[] segments;
+	private final boolean[] variables;
+	private final boolean hasVariables;
+	private final int literalLength;
+
+	private PathVariableTemplate(String[] segments, boolean[] variables) {
+		super();
+		this.segments = segments;
+		this.variables = variables;
+		boolean foundVariable = false;
+		int length = 0;
+		for (int i = 0; i < segments.length; i++) {
+			if (variables[i]) {
+				foundVariable = true;
+			} else {
+				length += segments[i].length();
+			}
+		}
+		this.hasVariables = foundVariable;
+		this.literalLength = length;
+	}
+
+	/**
+	 * Returns the (cached) template of the unresolved location
+	 */
+	public static PathVariableTemplate getTemplate(String unresolvedLocation) {
+		PathVariableTemplate template = templates.get(unresolvedLocation);
+		if (template == null) {
+			template = compile(unresolvedLocation);
+			if (templates.size() >= MAX_CACHE_SIZE) {
+				templates.clear();
+			}
+			templates.put(unresolvedLocation, template);
+		}
+		return template;
+	}
+
+	/**
+	 * Parses the unresolved location, a variable start without end is a literal
+	 */
+	private static PathVariableTemplate compile(String unresolvedLocation) {
+		List<String> segments = new ArrayList<String>();
+		List<Boolean> variables = new ArrayList<Boolean>();
+		StringBuffer literal = new StringBuffer();
+		int start = 0;
+		while (start != -1) {
+			int varStart = unresolvedLocation.indexOf(PreferredLocationsUtil.PATH_VARIABLE_START_STRING, start);
+			if (varStart == -1) {
+				literal.append(unresolvedLocation.substring(start));
+				start = -1;
+			} else {
+				literal.append(unresolvedLocation.substring(start, varStart));
+				int varEnd = unresolvedLocation.indexOf(PreferredLocationsUtil.PATH_VARIABLE_END_STRING, varStart);
+				if (varEnd == -1) {
+					// var begin without end !!
+					literal.append(unresolvedLocation.substring(varStart));
+					start = -1;
+				} else {
+					if (literal.length() > 0) {
+						segments.add(literal.toString());
+						variables.add(Boolean.FALSE);
+						literal.setLength(0);
+					}
+					segments.add(unresolvedLocation.substring(
+						varStart + PreferredLocationsUtil.PATH_VARIABLE_START_STRING.length(),
+						varEnd).trim());
+					variables.add(Boolean.TRUE);
+					start = varEnd + PreferredLocationsUtil.PATH_VARIABLE_END_STRING.length();
+				}
+			}
+		}
+		if (literal.length() > 0) {
+			segments.add(literal.toString());
+			variables.add(Boolean.FALSE);
+		}
+		boolean[] variableArray = new boolean[variables.size()];
+		for (int i = 0; i < variableArray.length; i++) {
+			variableArray[i] = variables.get(i).booleanValue();
+		}
+		return new PathVariableTemplate(segments.toArray(new String[segments.size()]), variableArray);
+	}
+
+	/**
+	 * Returns true if the template contains path variables
+	 */
+	public boolean hasVariables() {
+		return hasVariables;
+	}
+
+	/**
+	 * Replaces the path variables, returns null if a path variable is undefined.
+	 * Variables not defined in the map are looked up in the project set entry
+	 * (see PreferredLocationsUtil.addProjectSetEntrySpecificImplizitPathVariables).
+	 * If the map is null, it is created only if the template contains variables.
+	 */
+	public String resolve(Map<String, String> projectSetEntryIndependentPathVariableMap, ProjectSetEntry psEntry) {
+		if (hasVariables && (projectSetEntryIndependentPathVariableMap == null)) {
+			projectSetEntryIndependentPathVariableMap = PreferredLocationsUtil.getPathVariableSnapshot().getPathVariableMap();
+		}
+		StringBuilder resolvedLocation = new StringBuilder(literalLength + 32 * segments.length);
+		for (int i = 0; i < segments.length; i++) {
+			if (variables[i]) {
+				String pathVariableValue = projectSetEntryIndependentPathVariableMap.get(segments[i]);
+				if (pathVariableValue == null) {
+					pathVariableValue = getProjectSetEntrySpecificValue(segments[i], psEntry);
+				}
+				if (pathVariableValue == null) {
+					// used path variable is undefined
+					return null;
+				}
+				resolvedLocation.append(pathVariableValue);
+			} else {
+				resolvedLocation.append(segments[i]);
+			}
+		}
+		return new Path(resolvedLocation.toString()).toOSString();
+	}
+
+	private static String getProjectSetEntrySpecificValue(String name, ProjectSetEntry psEntry) {
+		if (psEntry == null) {
+			return null;
+		}
+		if (PreferredLocationsUtil.PROJECTNAME_PATH_VARIABLE.equals(name)) {
+			return psEntry.getProjectName();
+		}
+		if (PreferredLocationsUtil.PROJECTTAG_PATH_VARIABLE.equals(name)) {
+			return psEntry.getTag();
+		}
+		return null;
+	}
+}
@@ -123,36 +123,30 @@ public class PreferredLocationsUtil {
 	 *    key = project name
 	 *    value = (unresolved) preferred destination folder 
 	 */
-	public static void write(Map<String, String> preferredFolderMap, IFile pplFile) {
+	public static void write(final Map<String, String> preferredFolderMap, IFile pplFile) {
 
 		if ((!preferredFolderMap.isEmpty()) || pplFile.exists()) {
-			Document document = null;
+			// write XML elements to file
 			try {
-				document = XMLUtil.createNewDocument();
-			} catch (ParserConfigurationException e) {
-				e.printStackTrace();
-				return;
-			}
-	
-			Element psfElement = document.createElement(XML_ELEM_PREFERRED_PROJECT_LOCATIONS);
-			document.appendChild(psfElement);
-			psfElement.setAttribute(XML_ATTR_VERSION, PPL_VERSION);
-	
-			Iterator<Map.Entry<String, String>> mapIterator = preferredFolderMap.entrySet().iterator();
-			while (mapIterator.hasNext()) {
-				Map.Entry<String, String> mapEntry = mapIterator.next();
-				String projectName = mapEntry.getKey();
-				String location = mapEntry.getValue();
-	
-				Element providerElement = document.createElement(XML_ELEM_MAPPING);
-				psfElement.appendChild(providerElement);
-				providerElement.setAttribute(XML_ATTR_PROJECT_NAME, projectName);
-				providerElement.setAttribute(XML_ATTR_LOCATION, location);
-			}
-	
-			// write XML document to file
-			try {
-				XMLUtil.writeDocument(document, pplFile);
+				XMLUtil.writeElements(new XMLUtil.ElementContent() {
+					public void write(XMLElementWriter writer) throws IOException {
+						writer.startElement(XML_ELEM_PREFERRED_PROJECT_LOCATIONS);
+						writer.attribute(XML_ATTR_VERSION, PPL_VERSION);
+				
+						Iterator<Map.Entry<String, String>> mapIterator = preferredFolderMap.entrySet().iterator();
+						while (mapIterator.hasNext()) {
+							Map.Entry<String, String> mapEntry = mapIterator.next();
+							String projectName = mapEntry.getKey();
+							String location = mapEntry.getValue();
+				
+							writer.startElement(XML_ELEM_MAPPING);
+							writer.attribute(XML_ATTR_PROJECT_NAME, projectName);
+							writer.attribute(XML_ATTR_LOCATION, location);
+							writer.endElement();
+						}
+						writer.endElement();
+					}
+				}, pplFile);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -237,10 +231,19 @@ public class PreferredLocationsUtil {
 	 * Not contains project set entry specific path variables
 	 */
 	public static Map<String, String> getProjectSetEntryIndependentPathVariableMap() {
-		Map<String, String> resultMap = new HashMap<String, String>();
-		addUserDefinedPathVariables(resultMap);
-		addGlobalImplizitPathVariables(resultMap);
-		return resultMap;
+		return new HashMap<String, String>(getPathVariableSnapshot().getPathVariableMap());
+	}
+	
+	/**
+	 * return the snapshot of the user defined path variables and global implicit variables
+	 * (cached by the plugin until the path variable preferences change)
+	 */
+	public static PathVariableSnapshot getPathVariableSnapshot() {
+		ProjectSetPlugin plugin = ProjectSetPlugin.getDefault();
+		if ((plugin == null) || (plugin.getPathVariableCache() == null)) {
+			return PathVariableCache.createSnapshot(0);
+		}
+		return plugin.getPathVariableCache().getSnapshot();
 	}
 	
 	/** return default location if unresolvedLocation is null or empty
@@ -248,9 +251,10 @@ public class PreferredLocationsUtil {
 	 * Return null if unresolvedLocation has undefined path variables
 	 * 
 	 * For better performance a path variable map can be cached outside
-	 * this method (by calling getProjectSetEntryIndependentPathVariableMap()) and given to this 
+	 * this method (by calling getPathVariableSnapshot()) and given to this 
 	 * method by the parameter cachedPathVariableMap. If cachedPathVariableMap is null
-	 * this method calls getProjectSetEntryIndependentPathVariableMap() itself.
+	 * this method uses the map of getPathVariableSnapshot() itself.
+	 * Each distinct unresolved location is parsed only once (see PathVariableTemplate).
 	 */
 	public static String resolve(String unresolvedLocation, Map<String,String> projectSetEntryIndependentPathVariableMap, ProjectSetEntry psEntry) {
 		if ((unresolvedLocation == null)
@@ -258,63 +262,8 @@ public class PreferredLocationsUtil {
 			// return default path for project
 			return getDefaultLocation(psEntry);
 		} else {
-			// resolve path variables
-			StringBuffer resolvedLocation = new StringBuffer();
-			// parse String
-			int start = 0;
-			while (start != -1) {
-				int varStart = unresolvedLocation.indexOf(
-					PATH_VARIABLE_START_STRING,
-					start);
-
-				if (varStart == -1) {
-					// no variable any more, so append rest of unresolved
-					resolvedLocation.append(unresolvedLocation.substring(start));	
-					start = -1;
-				} else {
-					// append unresolved until start of variable
-					resolvedLocation.append(unresolvedLocation.substring(start, varStart));
-					// get variable name
-					int varEnd = unresolvedLocation.indexOf(PATH_VARIABLE_END_STRING, varStart);
-					if (varEnd == -1) {
-						// var begin without end !!
-						resolvedLocation.append(unresolvedLocation.substring(varStart));
-						start = -1;
-					} else {
-						// append value of variable
-						String name = unresolvedLocation.substring(
-							varStart + PATH_VARIABLE_START_STRING.length(),
-							varEnd).trim();
-						
-						// use cached map or create temporary map
-						if (projectSetEntryIndependentPathVariableMap == null) {
-							projectSetEntryIndependentPathVariableMap = getProjectSetEntryIndependentPathVariableMap();
-						}
-						
-						String pathVariableValue = projectSetEntryIndependentPathVariableMap.get(name);
-						
-						if (pathVariableValue == null) {
-							if (psEntry != null) {
-								// check for project set entry specific path variable
-								Map<String, String> psEntrySpecificImplizitPathVariablesMap = new HashMap<String, String>();
-								addProjectSetEntrySpecificImplizitPathVariables(psEntrySpecificImplizitPathVariablesMap, psEntry);
-								pathVariableValue = psEntrySpecificImplizitPathVariablesMap.get(name);
-							}
-						}
-							
-						if (pathVariableValue == null) {
-							// used path variable is undefined
-							return null;
-						} else {
-							// append value of variable
-							resolvedLocation.append(pathVariableValue);
-						}
-						// set start for next iteration behind end of variable
-						start = varEnd + PATH_VARIABLE_END_STRING.length();
-					}
-				}
-			}
-			return new Path(resolvedLocation.toString()).toOSString();
+			// resolve path variables of the parsed location
+			return PathVariableTemplate.getTemplate(unresolvedLocation).resolve(projectSetEntryIndependentPathVariableMap, psEntry);
 		}
 	}
 	
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is used by ProjectSet to find its direct entries by project name.
+ *
+ * Entries are compared by identity (like ProjectSet.includesProjectSetEntry),
+ * so different entries with the same content are indexed separately.
+ */
+class ProjectNameIndex {
+
+	// key = project name, value = entries with the project name
+	private Map<String, List<ProjectSetEntry>> entriesByName = new HashMap<String, List<ProjectSetEntry>>();
+
+	// key = entry, value = project name the entry is indexed with
+	private Map<ProjectSetEntry, String> indexedNames = new IdentityHashMap<ProjectSetEntry, String>();
+
+	/**
+	 * Creates an index for the entries
+	 */
+	public ProjectNameIndex(List<ProjectSetEntry> projectSetEntries) {
+		super();
+		Iterator<ProjectSetEntry> entryIterator = projectSetEntries.iterator();
+		while (entryIterator.hasNext()) {
+			add(entryIterator.next());
+		}
+	}
+
+	public void add(ProjectSetEntry entry) {
+		String projectName = entry.getProjectName();
+		List<ProjectSetEntry> entries = entriesByName.get(projectName);
+		if (entries == null) {
+			entries = new ArrayList<ProjectSetEntry>(1);
+			entriesByName.put(projectName, entries);
+		}
+		entries.add(entry);
+		indexedNames.put(entry, projectName);
+	}
+
+	public void remove(ProjectSetEntry entry) {
+		String projectName = indexedNames.remove(entry);
+		if (projectName != null) {
+			List<ProjectSetEntry> entries = entriesByName.get(projectName);
+			removeIdentical(entries, entry);
+			if (entries.isEmpty()) {
+				entriesByName.remove(projectName);
+			}
+		}
+	}
+
+	/**
+	 * Indexes the entry again if it is already indexed,
+	 * to be called when the project name of the entry may have changed
+	 */
+	public void update(ProjectSetEntry entry) {
+		if (contains(entry)) {
+			remove(entry);
+			add(entry);
+		}
+	}
+
+	public boolean contains(ProjectSetEntry entry) {
+		return indexedNames.containsKey(entry);
+	}
+
+	/**
+	 * Returns the entries with the project name (in no specific order)
+	 * or null if there is no such entry
+	 */
+	public List<ProjectSetEntry> getEntries(String projectName) {
+		return entriesByName.get(projectName);
+	}
+
+	private static void removeIdentical(List<ProjectSetEntry> entries, ProjectSetEntry entry) {
+		for (int i = 0; i < entries.size(); i++) {
+			if (entries.get(i) == entry) {
+				entries.remove(i);
+				return;
+			}
+		}
+	}
+}
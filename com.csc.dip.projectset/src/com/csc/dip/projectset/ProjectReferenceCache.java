@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.team.core.RepositoryProvider;
+import org.eclipse.team.core.TeamException;
+
+/**
+ * Caches the project references of loaded and shared projects
+ * (as returned by IProjectReferenceAnalyser.asReference).
+ *
+ * Only the references of providers that keep all their metadata inside the
+ * project are cached (see CACHED_PROVIDERS). The metadata of other providers
+ * (like a Git repository or a SVN working copy) can be outside the project,
+ * so e.g. a branch switch would not be noticed, their references are always
+ * retrieved from the provider.
+ *
+ * A cached reference is removed when the project is added, removed,
+ * opened, closed or moved and when its .project file or its team metadata
+ * (team private members and CVS folders) change. It is not used if the
+ * project is no longer mapped to the provider or if it was retrieved for
+ * another project set file. All references are removed by clear
+ * (e.g. on a full build or when a project set editor is opened).
+ */
+public class ProjectReferenceCache implements IResourceChangeListener {
+
+	// providers whose references are cached
+	private static final Set<String> CACHED_PROVIDERS = new HashSet<String>(Arrays.asList(new String[] {
+		"org.eclipse.team.cvs.core.cvsnature" //$NON-NLS-1$
+	}));
+
+	private static final String[] TEAM_METADATA_NAMES = {"CVS"}; //$NON-NLS-1$
+
+	// key = project, value = cached reference
+	private Map<IProject, CachedReference> references = new ConcurrentHashMap<IProject, CachedReference>();
+
+	// incremented whenever a reference is removed, to detect references retrieved while they were invalidated
+	private AtomicLong invalidationCount = new AtomicLong();
+
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+
+	private static class CachedReference {
+
+		private final String provider;
+		private final String projectSetFilename; // passed to asReference, may be null
+		private final String reference;
+
+		public CachedReference(String provider, String projectSetFilename, String reference) {
+			super();
+			this.provider = provider;
+			this.projectSetFilename = projectSetFilename;
+			this.reference = reference;
+		}
+
+		/**
+		 * Returns true if the reference was retrieved for the provider and project set file
+		 * and the project is still mapped to the provider
+		 */
+		public boolean isValid(IProject project, String provider, String projectSetFilename) {
+			if (!this.provider.equals(provider)) {
+				return false;
+			}
+			if ((this.projectSetFilename == null) ? (projectSetFilename != null) : !this.projectSetFilename.equals(projectSetFilename)) {
+				return false;
+			}
+			RepositoryProvider mappedProvider = RepositoryProvider.getProvider(project);
+			return (mappedProvider != null) && provider.equals(mappedProvider.getID());
+		}
+	}
+
+	/**
+	 * Starts listening to resource changes
+	 */
+	public void startup() {
+		ProjectSetPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	/**
+	 * Stops listening and removes all cached references
+	 */
+	public void shutdown() {
+		ProjectSetPlugin.getWorkspace().removeResourceChangeListener(this);
+		clear();
+	}
+
+	/**
+	 * Returns true if the provider keeps all its metadata inside the project,
+	 * so its references are cached
+	 */
+	static boolean isCachedProvider(String provider) {
+		return CACHED_PROVIDERS.contains(provider);
+	}
+
+	/**
+	 * Returns the references of the projects shared by the provider (like asReference
+	 * of the project reference analyser of the provider). The references that are not
+	 * cached are retrieved with one call of asReference.
+	 *
+	 * Returns null if asReference returns null.
+	 */
+	public String[] getReferences(IProject[] projects, String provider, String projectSetFilename) throws TeamException {
+		if (!isCachedProvider(provider)) {
+			IProjectReferenceAnalyser prAnalyser = ProjectSetUtil.getProjectReferenceAnalyser(provider);
+			return prAnalyser.asReference(projects, new ProjectSetContext(), new NullProgressMonitor(), projectSetFilename);
+		}
+
+		String[] loadedReferences = new String[projects.length];
+		List<Integer> missingIndices = new ArrayList<Integer>();
+		for (int i = 0; i < projects.length; i++) {
+			CachedReference cachedReference = references.get(projects[i]);
+			if ((cachedReference != null) && cachedReference.isValid(projects[i], provider, projectSetFilename)) {
+				loadedReferences[i] = cachedReference.reference;
+				hitCount.incrementAndGet();
+			} else {
+				missingIndices.add(new Integer(i));
+				missCount.incrementAndGet();
+			}
+		}
+		if (missingIndices.isEmpty()) {
+			return loadedReferences;
+		}
+
+		IProject[] missingProjects = new IProject[missingIndices.size()];
+		for (int i = 0; i < missingProjects.length; i++) {
+			missingProjects[i] = projects[missingIndices.get(i).intValue()];
+		}
+		long invalidationCountBefore = invalidationCount.get();
+		IProjectReferenceAnalyser prAnalyser = ProjectSetUtil.getProjectReferenceAnalyser(provider);
+		String[] missingReferences = prAnalyser.asReference(missingProjects, new ProjectSetContext(), new NullProgressMonitor(), projectSetFilename);
+		if ((missingReferences == null) || (missingReferences.length != missingProjects.length)) {
+			return null;
+		}
+		for (int i = 0; i < missingProjects.length; i++) {
+			loadedReferences[missingIndices.get(i).intValue()] = missingReferences[i];
+			if ((missingReferences[i] != null) && (invalidationCount.get() == invalidationCountBefore)) {
+				references.put(missingProjects[i], new CachedReference(provider, projectSetFilename, missingReferences[i]));
+			}
+		}
+		return loadedReferences;
+	}
+
+	/**
+	 * Removes the cached reference of the project
+	 */
+	public void invalidate(IProject project) {
+		invalidationCount.incrementAndGet();
+		references.remove(project);
+	}
+
+	/**
+	 * Removes all cached references
+	 */
+	public void clear() {
+		invalidationCount.incrementAndGet();
+		references.clear();
+	}
+
+	/**
+	 * Returns the number of references that were found in the cache
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of references that were not found in the cache
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Sets the hit and miss count to 0
+	 */
+	public void resetCounters() {
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta = event.getDelta();
+		if ((delta == null) || references.isEmpty()) {
+			return;
+		}
+		IResourceDelta[] projectDeltas = delta.getAffectedChildren();
+		for (int i = 0; i < projectDeltas.length; i++) {
+			IResourceDelta projectDelta = projectDeltas[i];
+			IProject project = (IProject) projectDelta.getResource();
+			if (references.containsKey(project) && isReferenceAffected(projectDelta)) {
+				invalidate(project);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the delta of a project may change the reference of the project
+	 */
+	protected boolean isReferenceAffected(IResourceDelta projectDelta) {
+		if ((projectDelta.getKind() & (IResourceDelta.ADDED | IResourceDelta.REMOVED)) != 0) {
+			return true;
+		}
+		int projectFlags = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO | IResourceDelta.REPLACED;
+		if ((projectDelta.getFlags() & projectFlags) != 0) {
+			return true;
+		}
+
+		final boolean[] affected = new boolean[1];
+		try {
+			projectDelta.accept(new IResourceDeltaVisitor() {
+				public boolean visit(IResourceDelta delta) throws CoreException {
+					if (affected[0]) {
+						return false;
+					}
+					IResource resource = delta.getResource();
+					if ((resource.getType() == IResource.FILE) &&
+						(resource.getParent().getType() == IResource.PROJECT) &&
+						(resource.getName().equals(IProjectDescription.DESCRIPTION_FILE_NAME))) {
+						affected[0] = true;
+					} else if (resource.isTeamPrivateMember() || isTeamMetadataName(resource.getName())) {
+						affected[0] = true;
+					}
+					return !affected[0];
+				}
+			}, IContainer.INCLUDE_TEAM_PRIVATE_MEMBERS);
+		} catch (CoreException e) {
+			return true;
+		}
+		return affected[0];
+	}
+
+	private static boolean isTeamMetadataName(String name) {
+		for (int i = 0; i < TEAM_METADATA_NAMES.length; i++) {
+			if (TEAM_METADATA_NAMES[i].equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
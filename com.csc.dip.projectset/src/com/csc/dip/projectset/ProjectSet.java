@@ -27,53 +27,72 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import org.eclipse.team.core.TeamException;
 
 
 public class ProjectSet {
 
 	// constants for reading and writing a projects set from/to a XML file
-	private static final String XML_ELEM_PSF = "psf"; //$NON-NLS-1$
+	static final String XML_ELEM_PSF = "psf"; //$NON-NLS-1$
 	private static final String XML_ATTR_VERSION = "version"; //$NON-NLS-1$		
-	private static final String XML_ELEM_PROVIDER = "provider"; //$NON-NLS-1$
-	private static final String XML_ATTR_ID = "id"; //$NON-NLS-1$
-	private static final String XML_ELEM_PROJECT = "project"; //$NON-NLS-1$
-	private static final String XML_ATTR_REFERENCE = "reference"; //$NON-NLS-1$
+	static final String XML_ELEM_PROVIDER = "provider"; //$NON-NLS-1$
+	static final String XML_ATTR_ID = "id"; //$NON-NLS-1$
+	static final String XML_ELEM_PROJECT = "project"; //$NON-NLS-1$
+	static final String XML_ATTR_REFERENCE = "reference"; //$NON-NLS-1$
 	private static final String PSF_VERSION = "2.0"; //$NON-NLS-1$
+
+	// message keys for errors in sub project sets, index = error type
+	private static final String[] SUB_ERROR_TEXT_KEYS = {
+		"ProjectSet.Tag_Conflict_in", //$NON-NLS-1$
+		"ProjectSet.Path_Conflict_in", //$NON-NLS-1$
+		"ProjectSet.Undefined_variable_in", //$NON-NLS-1$
+		"ProjectSet.Not_loaded_to_preferred_path_in", //$NON-NLS-1$
+		"ProjectSet.Duplicate_path_segment_in"}; //$NON-NLS-1$
+	// message keys for errors also in sub project sets, index = error type
+	private static final String[] AND_ERROR_TEXT_KEYS = {
+		"ProjectSet.AND_Tag_Conflict_in", //$NON-NLS-1$
+		"ProjectSet.AND_Path_Conflict_in", //$NON-NLS-1$
+		"ProjectSet.and_in", //$NON-NLS-1$
+		"ProjectSet.and_not_loaded_to_preferred_path_in", //$NON-NLS-1$
+		"ProjectSet.and_duplicate_path_segment_in"}; //$NON-NLS-1$
 	
 	private List<ProjectSetEntry> projectSetEntries = new ArrayList<ProjectSetEntry>();
+	private ProjectNameIndex projectNameIndex; // created on first lookup, null if not created yet
 	private IFile projectSetFile;
 	private boolean isFileCorrupted = false;
 	private ProjectSetEntry parentProjectSetEntry;		
+	private boolean lazyExpansion = false; // if true, sub project sets are updated when they are requested
+	private boolean detached = false; // if true, sub project sets are not shared (see createDetached)
 
 	protected class ProjectSetEntryComparator implements Comparator<ProjectSetEntry> {
 		public int compare(ProjectSetEntry projectSetEntry1, ProjectSetEntry projectSetEntry2) {
@@ -94,8 +113,20 @@ public class ProjectSet {
 	 * @param updateFromFile if true load content from file. Use false if you want to create a new project set from scratch
 	 */
 	public ProjectSet(IFile projectSetFile, boolean updateFromFile) {
+		this(projectSetFile, updateFromFile, false);
+	}
+
+	/**
+	 * Creates a project set and load the content if the param load is true
+	 * 
+	 * @param projectSetFile the project set file
+	 * @param updateFromFile if true load content from file. Use false if you want to create a new project set from scratch
+	 * @param lazyExpansion if true the sub project sets are updated when they are requested (see setLazyExpansion)
+	 */
+	public ProjectSet(IFile projectSetFile, boolean updateFromFile, boolean lazyExpansion) {
 		super();
 			this.projectSetFile = projectSetFile;
+			this.lazyExpansion = lazyExpansion;
 			if (updateFromFile) {
 				update();
 			}
@@ -122,6 +153,25 @@ public class ProjectSet {
 		}
 	}
 
+	/**
+	 * Creates a project set whose sub project sets are new project sets instead of
+	 * the (shared) project sets of the project set projects, so it can be updated
+	 * and checked while other threads use the shared project sets.
+	 * The content is not loaded, use update.
+	 */
+	static ProjectSet createDetached(IFile projectSetFile) {
+		ProjectSet projectSet = new ProjectSet(projectSetFile, false);
+		projectSet.detached = true;
+		return projectSet;
+	}
+
+	/**
+	 * Returns true if the sub project sets are not shared (see createDetached)
+	 */
+	boolean isDetached() {
+		return detached;
+	}
+
 	/** 
 	 * Returns a copy of this project set
 	 * -makes copies of projectSetEntries (non recursive!)
@@ -147,7 +197,7 @@ public class ProjectSet {
 	 * This method do not check for conflicts !
 	 */
 	public void update() {
-		update(new HashSet<IFile>());
+		update(new HashSet<IFile>(), lazyExpansion);
 	}
 
 
@@ -161,21 +211,48 @@ public class ProjectSet {
 	 * This method do not check for conflicts ! 
 	 */
 	protected void update(Set<IFile> updatedProjectSetFiles) {	
+		update(updatedProjectSetFiles, false);
+	}
+
+	/**
+	 * Updates the project set entries from the project set file
+	 * and update the entries recursively, the sub project sets are
+	 * updated when they are requested if lazy is true
+	 * 
+	 * Add the project set file to the list updatedProjectSetFiles
+	 * and check for endless recursion.
+	 * 
+	 * This method do not check for conflicts ! 
+	 */
+	protected void update(Set<IFile> updatedProjectSetFiles, boolean lazy) {	
+		update(updatedProjectSetFiles, lazy, new NullProgressMonitor());
+	}
+
+	/**
+	 * Updates the project set entries from the project set file
+	 * and update the entries recursively like update(Set, boolean).
+	 * Throws an OperationCanceledException if the monitor is canceled.
+	 */
+	protected void update(Set<IFile> updatedProjectSetFiles, boolean lazy, IProgressMonitor monitor) {	
 		// check for endless recursion
 		if (updatedProjectSetFiles.add(getProjectSetFile())) {
 			
-			// load set entries from file
+			// load set entries from file (or the cached content of the file)
 			projectSetEntries = new ArrayList<ProjectSetEntry>();
-			Map<String, List<String>> loadedMap = loadProjectSetReferenceMap(projectSetFile);
-			if (loadedMap != null) {		
-				addProjectSetReferenceMap(loadedMap);
+			projectNameIndex = null;
+			ProjectSetFileSnapshot snapshot = getProjectSetFileSnapshot();
+			if (snapshot.isCorrupted()) {
+				isFileCorrupted = true;
+			}
+			if (snapshot.getReferenceMap() != null) {		
+				addParsedReferenceMap(snapshot.getReferenceMap());
 			}		
 
 			// update preferred project locations
-			PreferredLocationsUtil.updatePreferredProjectLocations(this);
+			PreferredLocationsUtil.setMapToProjectSet(this, snapshot.getPreferredLocationMap());
 
 			// recursively update loaded entries
-			updateEntries(updatedProjectSetFiles);
+			updateEntries(updatedProjectSetFiles, lazy, monitor);
 		}
 	}
 
@@ -188,7 +265,16 @@ public class ProjectSet {
 	 * This method do not check for conflicts ! 
 	 */
 	public void  updateEntries() {
-		updateEntries(new HashSet<IFile>());
+		updateEntries(new HashSet<IFile>(), lazyExpansion);
+	}
+
+	/**
+	 * Updates the current project set entries and update them recursively like updateEntries().
+	 * Throws an OperationCanceledException if the monitor is canceled, the
+	 * monitor is checked for each provider and each sub project set.
+	 */
+	public void  updateEntries(IProgressMonitor monitor) {
+		updateEntries(new HashSet<IFile>(), lazyExpansion, monitor);
 	}
 	
 	/**
@@ -203,82 +289,175 @@ public class ProjectSet {
 	 * This method do not check for conflicts ! 
 	 */
 	protected void updateEntries(Set<IFile> updatedProjectSetFiles) {
+		updateEntries(updatedProjectSetFiles, false);
+	}
+
+	/**
+	 * Updates the current project set entries and update them recursively,
+	 * the sub project sets are updated when they are requested if lazy is true
+	 * (see setLazyExpansion).
+	 * 
+	 * Add the project set file to the list updatedProjectSetFiles
+	 * and check for endless recursion.
+	 * 
+	 * This method do not check for conflicts ! 
+	 */
+	protected void updateEntries(Set<IFile> updatedProjectSetFiles, boolean lazy) {
+		updateEntries(updatedProjectSetFiles, lazy, new NullProgressMonitor());
+	}
+
+	/**
+	 * Updates the current project set entries and update them recursively
+	 * like updateEntries(Set, boolean).
+	 * Throws an OperationCanceledException if the monitor is canceled.
+	 */
+	protected void updateEntries(Set<IFile> updatedProjectSetFiles, boolean lazy, IProgressMonitor monitor) {
 		updatedProjectSetFiles.add(getProjectSetFile());	
+		updateStates(projectSetEntries, monitor);
 		Iterator<ProjectSetEntry> entryIterator = projectSetEntries.iterator();
 		while (entryIterator.hasNext()) {
 			ProjectSetEntry psEntry = entryIterator.next();
-			psEntry.update(updatedProjectSetFiles);
+			psEntry.updateSubProjectSet(updatedProjectSetFiles, lazy, monitor);
 		}		
 	}
-	
-	/** 
-	 * Loads a project set file and return a map where key is the provider name 
-	 * and value is a list of project reference strings	
+
+	/**
+	 * Returns true if update() and updateEntries() update the sub project sets
+	 * when they are requested
 	 */
-	protected Map<String, List<String>> loadProjectSetReferenceMap(IFile projectSetFile) {
-		if(!(projectSetFile.getFullPath().toFile().exists() && projectSetFile.getFullPath().toFile().canRead()) && !(projectSetFile.exists() && projectSetFile.isAccessible())){
-			return null;
-		}
-		// map where key is the provider name and value is a list of project reference strings
-		Map<String, List<String>> map = new HashMap<String, List<String>>();
+	public boolean isLazyExpansion() {
+		return lazyExpansion;
+	}
+
+	/**
+	 * If lazyExpansion is true, update() and updateEntries() update only the entries
+	 * of this project set. The sub project set of an entry is loaded and updated
+	 * (also lazily) when it is requested the first time by getSubProjectSet, e.g. when
+	 * the entries are visited recursively or the errors are updated.
+	 */
+	public void setLazyExpansion(boolean lazyExpansion) {
+		this.lazyExpansion = lazyExpansion;
+	}
 
-		Document document = null;
+	/**
+	 * Updates the states of all entries recursively.
+	 * Uses the current sub project sets, they are not updated !
+	 * 
+	 * The references of the loaded projects that are not cached
+	 * are retrieved with one call of asReference per provider.
+	 */
+	public void updateStates() {
+		updateStates(Arrays.asList(getProjectSetEntriesRecursively()));
+	}
 
-		try {
-			if(projectSetFile.getLocation() == null) {
-				File psFile = projectSetFile.getFullPath().toFile();
-				document = XMLUtil.readDocument(psFile);
-			}else {
-				document = XMLUtil.readDocument(projectSetFile.getLocation().toFile());	
+	/**
+	 * Updates the states of the entries (like ProjectSetEntry.updateState).
+	 * The references of the loaded projects that are not cached
+	 * are retrieved with one call of asReference per provider.
+	 */
+	protected void updateStates(List<ProjectSetEntry> entries) {
+		updateStates(entries, new NullProgressMonitor());
+	}
+
+	/**
+	 * Updates the states of the entries like updateStates(List).
+	 * Throws an OperationCanceledException if the monitor is canceled,
+	 * the monitor is checked before the references of a provider are retrieved.
+	 */
+	protected void updateStates(List<ProjectSetEntry> entries, IProgressMonitor monitor) {
+		// key = provider, value = (key = loaded project, value = entries of the project)
+		Map<String, Map<IProject, List<ProjectSetEntry>>> entriesByProvider = new HashMap<String, Map<IProject, List<ProjectSetEntry>>>();
+		Iterator<ProjectSetEntry> entryIterator = entries.iterator();
+		while (entryIterator.hasNext()) {
+			ProjectSetEntry psEntry = entryIterator.next();
+			IProject loadedProject = psEntry.getProjectInWorkspace();
+			if (psEntry.updateStateWithoutReference(loadedProject)) {
+				Map<IProject, List<ProjectSetEntry>> entriesByProject = entriesByProvider.get(psEntry.getProvider());
+				if (entriesByProject == null) {
+					entriesByProject = new LinkedHashMap<IProject, List<ProjectSetEntry>>();
+					entriesByProvider.put(psEntry.getProvider(), entriesByProject);
+				}
+				List<ProjectSetEntry> entriesForProject = entriesByProject.get(loadedProject);
+				if (entriesForProject == null) {
+					entriesForProject = new ArrayList<ProjectSetEntry>(1);
+					entriesByProject.put(loadedProject, entriesForProject);
+				}
+				entriesForProject.add(psEntry);
 			}
-		} catch (ParserConfigurationException e) {
-			isFileCorrupted = true;
-			return null;
-		} catch (SAXException e) {
-			isFileCorrupted = true;
-			return null;
-		} catch (IOException e) {
-			isFileCorrupted = true;
-			return null;
 		}
-	
-        Element psfElement = document.getDocumentElement();
-        if (!psfElement.getNodeName().equals(XML_ELEM_PSF)) {
-        	// error: root element must be psf
-        	isFileCorrupted = true;
-			return null;
-        }
-        // version currently unused
-        //String psfVersion = psfElement.getAttribute(XML_ATTR_VERSION);
-
-		NodeList providerNodes = psfElement.getElementsByTagName(XML_ELEM_PROVIDER);
-		for (int i = 0; i < providerNodes.getLength(); i++) {
-			Node providerNode = providerNodes.item(i);
-			Node providerIDNode = providerNode.getAttributes().getNamedItem(XML_ATTR_ID);
-			if (providerIDNode == null) {
-				// error: attribute id required
-			} else {
-				List<String> referenceList = new ArrayList<String>();
-				String providerID = providerIDNode.getNodeValue();
-				NodeList projectNodes = providerNode.getChildNodes();
-				
-				for (int j = 0; j < projectNodes.getLength(); j++) {
-					Node projectNode = projectNodes.item(j);
-					if (projectNode.getNodeName().equals(XML_ELEM_PROJECT)) {
-						Node projectReferenceNode = projectNode.getAttributes().getNamedItem(XML_ATTR_REFERENCE);
-						if (projectReferenceNode == null) {
-							// error: attribute reference required
-						} else {
-							String projectReference = projectReferenceNode.getNodeValue();
-							referenceList.add(projectReference);
-						}
+
+		Iterator<Map.Entry<String, Map<IProject, List<ProjectSetEntry>>>> mapEntryIterator = entriesByProvider.entrySet().iterator();
+		while (mapEntryIterator.hasNext()) {
+			if (monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			Map.Entry<String, Map<IProject, List<ProjectSetEntry>>> mapEntry = mapEntryIterator.next();
+			Map<IProject, List<ProjectSetEntry>> entriesByProject = mapEntry.getValue();
+			IProject[] projects = entriesByProject.keySet().toArray(new IProject[entriesByProject.size()]);
+			String[] loadedReferences = null;
+			try {
+				loadedReferences = ProjectSetPlugin.getDefault().getProjectReferenceCache().getReferences(projects, mapEntry.getKey(), getProjectSetFilename());
+			} catch (TeamException e) {
+				// retrieve the references one by one below, so a single project does not affect the others
+			}
+			
+			for (int i = 0; i < projects.length; i++) {
+				Iterator<ProjectSetEntry> projectEntryIterator = entriesByProject.get(projects[i]).iterator();
+				while (projectEntryIterator.hasNext()) {
+					ProjectSetEntry psEntry = projectEntryIterator.next();
+					if ((loadedReferences == null) || (loadedReferences.length != projects.length)) {
+						psEntry.updateState();
+					} else {
+						psEntry.updateState(loadedReferences[i]);
 					}
 				}
-				map.put(providerID, referenceList);
 			}
 		}
-        		
-		return map;		
+	}
+	
+	/**
+	 * Returns the parsed content of the project set file and its ppl file,
+	 * cached by the plugin until one of the files is modified
+	 */
+	ProjectSetFileSnapshot getProjectSetFileSnapshot() {
+		ProjectSetPlugin plugin = ProjectSetPlugin.getDefault();
+		if ((plugin == null) || (plugin.getProjectSetFileCache() == null)) {
+			return ProjectSetFileSnapshot.load(getProjectSetFile());
+		}
+		return plugin.getProjectSetFileCache().getSnapshot(getProjectSetFile());
+	}
+
+	/** 
+	 * Loads a project set file and return a map where key is the provider name 
+	 * and value is a list of project reference strings.
+	 * (update reads the file through the ProjectSetFileCache, see ProjectSetFileReader)
+	 */
+	protected Map<String, List<String>> loadProjectSetReferenceMap(IFile projectSetFile) {
+		return getReferenceMap(ProjectSetFileReader.read(projectSetFile));
+	}
+
+	/** 
+	 * Reads a project set file in one pass with a streaming reader and return 
+	 * a map where key is the provider name and value is a list of project 
+	 * reference strings. Returns null if the root element is not a psf element.
+	 */
+	protected Map<String, List<String>> readProjectSetReferenceMap(File psFile) throws XMLStreamException, IOException {
+		return ProjectSetFileReader.readStreaming(psFile);
+	}
+
+	/** 
+	 * Reads a project set file as XML document and return a map where key is 
+	 * the provider name and value is a list of project reference strings
+	 */
+	protected Map<String, List<String>> loadProjectSetReferenceMapFromDocument(File psFile) {
+		return getReferenceMap(ProjectSetFileReader.readDocument(psFile));
+	}
+
+	private Map<String, List<String>> getReferenceMap(ProjectSetFileReader.Result result) {
+		if (result.isCorrupted()) {
+			isFileCorrupted = true;
+		}
+		return result.getReferenceMap();
 	}
 
 
@@ -287,43 +466,36 @@ public class ProjectSet {
 	 */
 	public void write() {
 		
-		Document document = null;
-		try {
-			document = XMLUtil.createNewDocument();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
-			return;
-		}
+		final Map<String, List<ProjectSetEntry>> map = getProjectSetMap();		
 		
-		Element psfElement = document.createElement(XML_ELEM_PSF);
-		document.appendChild(psfElement);
-		psfElement.setAttribute(XML_ATTR_VERSION, PSF_VERSION);
-		
-		Map<String, List<ProjectSetEntry>> map = getProjectSetMap();		
-		
-		Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapIterator = map.entrySet().iterator();
-		while (mapIterator.hasNext()) {
-			Map.Entry<String, List<ProjectSetEntry>> mapEntry = mapIterator.next();
-			String provider = mapEntry.getKey();
-			List<ProjectSetEntry> projectRefList = mapEntry.getValue();
-			
-			Element providerElement = document.createElement(XML_ELEM_PROVIDER);
-			psfElement.appendChild(providerElement);
-			providerElement.setAttribute(XML_ATTR_ID, provider);
-			
-			Iterator<ProjectSetEntry> projectEntryIterator = projectRefList.iterator();
-			while (projectEntryIterator.hasNext()) {
-				ProjectSetEntry psEntry = projectEntryIterator.next();
-				Element projectElement = document.createElement(XML_ELEM_PROJECT);
-				providerElement.appendChild(projectElement);
-				projectElement.setAttribute(XML_ATTR_REFERENCE, psEntry.getProjectReference());				
-			}
-			
-		}		
-		
-		// write XML document to file
+		// write XML elements to file
 		try {
-			XMLUtil.writeDocument(document, projectSetFile);
+			XMLUtil.writeElements(new XMLUtil.ElementContent() {
+				public void write(XMLElementWriter writer) throws IOException {
+					writer.startElement(XML_ELEM_PSF);
+					writer.attribute(XML_ATTR_VERSION, PSF_VERSION);
+					
+					Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapIterator = map.entrySet().iterator();
+					while (mapIterator.hasNext()) {
+						Map.Entry<String, List<ProjectSetEntry>> mapEntry = mapIterator.next();
+						String provider = mapEntry.getKey();
+						List<ProjectSetEntry> projectRefList = mapEntry.getValue();
+						
+						writer.startElement(XML_ELEM_PROVIDER);
+						writer.attribute(XML_ATTR_ID, provider);
+						
+						Iterator<ProjectSetEntry> projectEntryIterator = projectRefList.iterator();
+						while (projectEntryIterator.hasNext()) {
+							ProjectSetEntry psEntry = projectEntryIterator.next();
+							writer.startElement(XML_ELEM_PROJECT);
+							writer.attribute(XML_ATTR_REFERENCE, psEntry.getProjectReference());
+							writer.endElement();
+						}
+						writer.endElement();
+					}
+					writer.endElement();
+				}
+			}, projectSetFile);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -356,12 +528,28 @@ public class ProjectSet {
 		}
 	}
 	
+	/**
+	 * Adds an entry for each parsed project reference, the entries share the parsed references
+	 */
+	protected void addParsedReferenceMap(Map<String, List<ParsedProjectReference>> parsedReferenceMap) {		
+		Iterator<List<ParsedProjectReference>> referencesIterator = parsedReferenceMap.values().iterator();
+		while(referencesIterator.hasNext()) {
+			Iterator<ParsedProjectReference> referenceIterator = referencesIterator.next().iterator();
+			while (referenceIterator.hasNext()) {
+				addProjectSetEntry(new ProjectSetEntry(this, referenceIterator.next()));
+			}
+		}
+	}
+	
 	/**
 	 * Adds the project entry
 	 */
 	public void addProjectSetEntry(ProjectSetEntry projectSetEntry) {
 		projectSetEntry.setProjectSet(this);
 		projectSetEntries.add(projectSetEntry);
+		if (projectNameIndex != null) {
+			projectNameIndex.add(projectSetEntry);
+		}
 	}
 
 	/**
@@ -370,14 +558,37 @@ public class ProjectSet {
 	public void removeProjectSetEntry(ProjectSetEntry projectSetEntry) {
 		projectSetEntry.setProjectSet(null);
 		projectSetEntries.remove(projectSetEntry);
+		if (projectNameIndex != null) {
+			projectNameIndex.remove(projectSetEntry);
+		}
 	}	
+
+	/**
+	 * Updates the project name index for the entry,
+	 * called by the entry when its provider or reference has changed
+	 */
+	protected void projectSetEntryChanged(ProjectSetEntry projectSetEntry) {
+		if (projectNameIndex != null) {
+			projectNameIndex.update(projectSetEntry);
+		}
+	}
+
+	/**
+	 * Returns the index of the direct entries by project name
+	 */
+	private ProjectNameIndex getProjectNameIndex() {
+		if (projectNameIndex == null) {
+			projectNameIndex = new ProjectNameIndex(projectSetEntries);
+		}
+		return projectNameIndex;
+	}
 	
 	/** 
 	 * Checks if this project set contains the entry
 	 * Uses equals (not contentEquals) for comparison of entries !
 	 */
 	public boolean includesProjectSetEntry(ProjectSetEntry projectSetEntry) {
-		return (projectSetEntries.indexOf(projectSetEntry) != -1);
+		return getProjectNameIndex().contains(projectSetEntry);
 	}
 	
 	/**
@@ -403,26 +614,63 @@ public class ProjectSet {
 	 * (This method not load/replace projects in workspace)
 	 */
 	public ProjectSetEntry[] getProjectSetEntriesRecursively() {
-		List<ProjectSetEntry> collectedEntries = new ArrayList<ProjectSetEntry>();
-		addProjectSetEntriesRecursively(collectedEntries);		
+		final List<ProjectSetEntry> collectedEntries = new ArrayList<ProjectSetEntry>();
+		accept(new IProjectSetEntryVisitor() {
+			public boolean visit(ProjectSetEntry entry) {
+				collectedEntries.add(entry);
+				return true;
+			}
+		});
 		return collectedEntries.toArray(new ProjectSetEntry[collectedEntries.size()]);
 	}
-	
+
+	/**
+	 * Visits recursively all project set entries in the same order as
+	 * they are returned by getProjectSetEntriesRecursively, without
+	 * collecting them.
+	 * 
+	 * Entries of sub projects are only visited if the sub project is loaded
+	 * (This method not load/replace projects in workspace)
+	 */
+	public void accept(IProjectSetEntryVisitor visitor) {
+		acceptRecursively(visitor, Collections.newSetFromMap(new IdentityHashMap<ProjectSetEntry, Boolean>()));
+	}
+
 	/**
-	 * Adds recursively all project set entries to the list.
+	 * Adds recursively all project set entries to the list
+	 * that are not already in the list.
 	 * 
 	 * Entries of sub projects are only added if the sub project is loaded
 	 * (This method not load/replace projects in workspace)
 	 */ 
-	protected void addProjectSetEntriesRecursively(List<ProjectSetEntry> entryList) {
+	protected void addProjectSetEntriesRecursively(final List<ProjectSetEntry> entryList) {
+		Set<ProjectSetEntry> visitedEntries = Collections.newSetFromMap(new IdentityHashMap<ProjectSetEntry, Boolean>());
+		visitedEntries.addAll(entryList);
+		acceptRecursively(new IProjectSetEntryVisitor() {
+			public boolean visit(ProjectSetEntry entry) {
+				entryList.add(entry);
+				return true;
+			}
+		}, visitedEntries);
+	}
+
+	/**
+	 * Visits recursively all project set entries that are not in the set of visited entries
+	 * and add them to this set.
+	 * 
+	 * Entries of sub projects are only visited if the sub project is loaded
+	 * (This method not load/replace projects in workspace)
+	 */ 
+	protected void acceptRecursively(IProjectSetEntryVisitor visitor, Set<ProjectSetEntry> visitedEntries) {
 		Iterator<ProjectSetEntry> entryIterator = projectSetEntries.iterator();
 		while (entryIterator.hasNext()) {			
 			ProjectSetEntry psEntry = entryIterator.next();
-			if (!entryList.contains(psEntry)) {
-				entryList.add(psEntry);
-				ProjectSet subPS = psEntry.getSubProjectSet();
-				if (subPS != null) {
-					subPS.addProjectSetEntriesRecursively(entryList);
+			if (visitedEntries.add(psEntry)) {
+				if (visitor.visit(psEntry)) {
+					ProjectSet subPS = psEntry.getSubProjectSet();
+					if (subPS != null) {
+						subPS.acceptRecursively(visitor, visitedEntries);
+					}
 				}
 			}
 		}
@@ -432,15 +680,22 @@ public class ProjectSet {
 	 * Returns the Entry with the project name or null if no entry found
 	 */	
 	public ProjectSetEntry getEntryForProject(String projectName) {
+		List<ProjectSetEntry> entriesForProject = getProjectNameIndex().getEntries(projectName);
+		if (entriesForProject == null) {
+			return null;
+		}
+		if (entriesForProject.size() == 1) {
+			return entriesForProject.get(0);
+		}
+		// more than one entry for the project, return the first in the project set
 		Iterator<ProjectSetEntry> projectEntryIterator = projectSetEntries.iterator();
-		ProjectSetEntry foundEntry = null;
-		while (projectEntryIterator.hasNext() && (foundEntry == null)) {
+		while (projectEntryIterator.hasNext()) {
 			ProjectSetEntry entry = projectEntryIterator.next();
-			if (entry.getProjectName().equals(projectName)) {
-				foundEntry = entry;
+			if (entriesForProject.contains(entry)) {
+				return entry;
 			}
 		}
-		return foundEntry;
+		return null;
 	}
 
 	/** 
@@ -466,6 +721,20 @@ public class ProjectSet {
 		return map;
 	}
 
+	/**
+	 * Returns the actions addToWorkspace would perform with the same
+	 * arguments, without changing the workspace.
+	 * 
+	 * Sub project sets of projects that are not loaded in the version of
+	 * their entry are only known after loading, so their entries are not
+	 * part of the plan (see LoadPlanAction.isSubProjectSetUnknown).
+	 * 
+	 * pre: the project set should be updated by the method update
+	 */
+	public LoadPlan createLoadPlan(List<String> projectNames, boolean recursive) {
+		return new LoadPlanner(this, recursive).createPlan(projectNames);
+	}
+
 	/**
 	 * Adds/replaces projects listed in projectNames and 
 	 * specified by the entries of this project set.
@@ -489,6 +758,7 @@ public class ProjectSet {
 	 * The list projectNames is only used for direct entries.
 	 * When loading recursively all entries of sub project sets
 	 * are added/replaced independently from the projectNames
+	 * (level by level, see addSubProjectSetsForLoaded)
 	 */	
 	protected void addToWorkspace(final ProjectSetContext context, IProgressMonitor monitor, List<String> projectNames, final boolean recursive, final Map<String, ProjectSetEntry> loadedEntries) {
 		
@@ -500,39 +770,92 @@ public class ProjectSet {
 			map = getProjectSetMap(projectNames);
 		}
 		
-		monitor.beginTask(MessageFormat.format(Messages.getString("ProjectSet.Loading_project_set__{0}_1"), new Object[] {getProjectSetFile().getName()}), map.size() + 1); //$NON-NLS-1$
+		SubMonitor progress = SubMonitor.convert(monitor, MessageFormat.format(Messages.getString("ProjectSet.Loading_project_set__{0}_1"), new Object[] {getProjectSetFile().getName()}), 2); //$NON-NLS-1$
 
+		List<IProject> loadedProjects = addToWorkspace(context, progress.newChild(1), recursive, loadedEntries, map);
+		if (recursive) {
+			addSubProjectSetsForLoaded(context, loadedProjects, progress.newChild(1), loadedEntries);
+		}
+
+		progress.done();
+	}
+
+	/**
+	 * Adds/replaces the entries of the map (key = provider, value = entries),
+	 * one batch per provider.
+	 * 
+	 * If concurrent loading is enabled in the preferences, the batches
+	 * of different providers may be added at the same time
+	 * (see ConcurrentProjectSetLoader).
+	 * 
+	 * If recursive, returns the projects of the entries that are in the workspace
+	 * after loading (see addExistingToLoaded), otherwise an empty list.
+	 */
+	protected List<IProject> addToWorkspace(ProjectSetContext context, IProgressMonitor monitor, boolean recursive, Map<String, ProjectSetEntry> loadedEntries, Map<String, List<ProjectSetEntry>> map) {
+		if (ConcurrentProjectSetLoader.isConcurrentLoading(map)) {
+			return new ConcurrentProjectSetLoader(this, context, loadedEntries).addToWorkspace(map, recursive, monitor);
+		}
+
+		SubMonitor progress = SubMonitor.convert(monitor, map.size());
+		List<IProject> loadedProjects = new ArrayList<IProject>();
 		Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapIterator = map.entrySet().iterator();
 		while (mapIterator.hasNext()) {			
 			Map.Entry<String, List<ProjectSetEntry>> mapEntry = mapIterator.next();
 			String provider = mapEntry.getKey();
 			List<ProjectSetEntry> psEntryList = mapEntry.getValue();
 			
-			addToWorkspace(context, SubMonitor.convert(monitor, 1), recursive, loadedEntries, provider, psEntryList);
-			monitor.worked(1);
+			loadedProjects.addAll(Arrays.asList(addToWorkspace(context, progress.newChild(1), recursive, loadedEntries, provider, psEntryList)));
 		}
-		monitor.worked(1);
+		progress.done();
+		return loadedProjects;
+	}
 
-		monitor.done();
+	/**
+	 * Returns the reason why the entry cannot be loaded, because its project
+	 * is in the workspace but can not be replaced (not accessible, not shared,
+	 * no reference analyser for its provider or its reference is unknown).
+	 * Returns null if the entry can be loaded.
+	 * This check is used by addToWorkspace and by LoadPlanner.
+	 */
+	static String getLoadProblem(ProjectSetEntry psEntry) {
+		IProject project = psEntry.getProjectInWorkspace();
+		if (project != null) {
+			try {
+				// check only for errors in constructor
+				new ProjectSetEntry(psEntry.getProjectSet(), project);
+			} catch (NewProjectSetEntryInvTargetException e) {
+				Throwable cause = e.getTargetException();
+				return ((cause != null) && (cause.getMessage() != null)) ? cause.getMessage() : project.getName();
+			} catch (NewProjectSetEntryException e) {
+				return e.getMessage();
+			}
+		}
+		return null;
 	}
 
 	/**
 	 * Adds/replaces projects listed for the specified provider.
+	 * 
+	 * If recursive, returns the projects of the entries that are in the workspace
+	 * after loading (see addExistingToLoaded), otherwise an empty array.
+	 * The sub project sets of the projects are not loaded.
 	 */	
-	protected void addToWorkspace(final ProjectSetContext context, IProgressMonitor monitor, final boolean recursive, final Map<String, ProjectSetEntry> loadedEntries, String provider, List<ProjectSetEntry> psEntryList) {
+	protected IProject[] addToWorkspace(final ProjectSetContext context, IProgressMonitor monitor, final boolean recursive, final Map<String, ProjectSetEntry> loadedEntries, String provider, List<ProjectSetEntry> psEntryList) {
 			
+		IProject[] loadedProjects = new IProject[0];
+
 		if (!ProjectSetUtil.isProviderSupported(provider)) {
 			reportStatus(
 				context,
 				MessageFormat.format(Messages.getString("ProjectSet.Error_while_loading_project_set,_reason__Team_provider_{0}_not_supported_2"), new Object[] {provider}) //$NON-NLS-1$
 			);
-			return;
+			return loadedProjects;
 		}
 
 		// prune entries that are loaded during the recursive load
 		pruneLoaded(psEntryList, loadedEntries);
 		if (psEntryList.isEmpty()) {
-			return;
+			return loadedProjects;
 		}
 
 		// collect project references
@@ -574,18 +897,7 @@ public class ProjectSet {
 			}
 			
 			List<ProjectSetEntry> problematicProjects = psEntryList.stream()
-					.filter(psEntry -> {
-						try {
-							IProject project = psEntry.getProjectInWorkspace();
-							if(project != null) {
-								// check only for errors in constructor
-								new ProjectSetEntry(psEntry.getProjectSet(), project);
-							}
-							return false;
-						} catch (NewProjectSetEntryInvTargetException | NewProjectSetEntryException e) {
-							return true;
-						}
-					})
+					.filter(psEntry -> getLoadProblem(psEntry) != null)
 					.collect(Collectors.toList());
 
 			psEntryList.removeAll(problematicProjects);
@@ -594,44 +906,14 @@ public class ProjectSet {
 			String[] projectReferences = psEntryList.stream().map(projectSet -> projectSet.getProjectReference()).toArray(String[]::new);
 			IProject[] projects = prAnalyser.addToWorkspace(projectReferences, context, SubMonitor.convert(monitor, projectReferences.length), getProjectSetFilename());
 			monitor.worked(projectReferences.length);
+			invalidateReferences(psEntryList);
 			
 			// createdProjects = null, if cancel pressed
 			if (projects != null && projects.length > 0) {
 				addToLoaded(provider, projects, loadedEntries);
-				if (recursive) {
-					addSubProjectSetsForCreated(context, projects, SubMonitor.convert(monitor, projectReferences.length), loadedEntries);
-				}
 			}
-			// perform recursive load for projects that already existed in the workspace (Those are not in projects array returned by "addToWorkspace")
 			if (recursive) {
-				List<IProject> existingProjects = new ArrayList<IProject>();
-				for (String projectReference : projectReferences) {
-					String projectName = prAnalyser.getProjectName(projectReference);
-					if (projectName != null) {
-						// check if project is in list of created (=> recursive load is handled above)
-						boolean isHandled = false;
-						if (projects != null) {
-							for (int i = 0; i < projects.length && !isHandled; i++) {
-								IProject handledProject = projects[i];
-								if (projectName.equals(handledProject.getName())) {
-									isHandled = true;	
-								}
-							}
-						}
-						if (!isHandled) {
-							// check if project exists
-							IProject projectInWorkspace = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
-							if (projectInWorkspace.exists()) {
-								existingProjects.add(projectInWorkspace);
-							}
-						}
-					}
-				}
-				if (!existingProjects.isEmpty()) {
-					IProject[] existingProjectsArray = (IProject[]) existingProjects.toArray(new IProject[existingProjects.size()]);
-					addToLoaded(provider, existingProjectsArray, loadedEntries);
-					addSubProjectSetsForCreated(context, existingProjectsArray , SubMonitor.convert(monitor, existingProjectsArray.length), loadedEntries);				
-				}
+				loadedProjects = addExistingToLoaded(provider, psEntryList, projects, loadedEntries);
 			}
 			
 			monitor.worked(projectReferences.length + 1);
@@ -662,6 +944,25 @@ public class ProjectSet {
 		// Preserve original behavior where cancel only stops loading the projects 
 		// from the current provider, but loading of the project set continues
 		monitor.setCanceled(false);
+
+		return loadedProjects;
+	}
+
+	/**
+	 * Removes the cached references of the projects of the entries,
+	 * the references of loaded projects change before the resource
+	 * changes are reported.
+	 */
+	protected void invalidateReferences(List<ProjectSetEntry> psEntryList) {
+		ProjectReferenceCache projectReferenceCache = ProjectSetPlugin.getDefault().getProjectReferenceCache();
+		IWorkspaceRoot root = ProjectSetPlugin.getWorkspace().getRoot();
+		Iterator<ProjectSetEntry> entryIterator = psEntryList.iterator();
+		while (entryIterator.hasNext()) {
+			String projectName = entryIterator.next().getProjectName();
+			if (projectName != null) {
+				projectReferenceCache.invalidate(root.getProject(projectName));
+			}
+		}
 	}
 
 	protected void reportStatus(ProjectSetContext context, String errorMessage) {
@@ -727,38 +1028,124 @@ public class ProjectSet {
 	}
 	
 	/** 
-	 * Add/replaces recursively project sets from project set projects 
-	 * for the creates projects
+	 * Returns the created projects and the projects of the entries that already
+	 * existed in the workspace (those are not in the array of the created projects).
+	 * The existing projects are added to the map of the loaded projects.
 	 */
-	protected void addSubProjectSetsForCreated(ProjectSetContext context, IProject[] createdProjects, IProgressMonitor monitor, Map<String, ProjectSetEntry> loadedEntries) {
-		if (createdProjects.length == 0)
-			return;
+	protected IProject[] addExistingToLoaded(String provider, List<ProjectSetEntry> psEntryList, IProject[] createdProjects, Map<String, ProjectSetEntry> loadedEntries) {
+		List<IProject> loadedProjects = new ArrayList<IProject>();
+		Set<String> createdProjectNames = new HashSet<String>();
+		if (createdProjects != null) {
+			for (int i = 0; i < createdProjects.length; i++) {
+				loadedProjects.add(createdProjects[i]);
+				createdProjectNames.add(createdProjects[i].getName());
+			}
+		}
 
-		monitor.beginTask(MessageFormat.format(Messages.getString("ProjectSet.Loading_{0,number,integer}_project_sets_4"), new Object[] {new Integer(createdProjects.length)}), createdProjects.length); //$NON-NLS-1$
-		
-		Iterator<ProjectSetEntry> entryIterator = projectSetEntries.iterator();
-		while (entryIterator.hasNext()) {			
+		List<IProject> existingProjects = new ArrayList<IProject>();
+		Iterator<ProjectSetEntry> entryIterator = psEntryList.iterator();
+		while (entryIterator.hasNext()) {
+			String projectName = entryIterator.next().getProjectName();
+			if ((projectName != null) && (!createdProjectNames.contains(projectName))) {
+				IProject projectInWorkspace = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+				if (projectInWorkspace.exists()) {
+					existingProjects.add(projectInWorkspace);
+				}
+			}
+		}
+		addToLoaded(provider, existingProjects.toArray(new IProject[existingProjects.size()]), loadedEntries);
+
+		loadedProjects.addAll(existingProjects);
+		return loadedProjects.toArray(new IProject[loadedProjects.size()]);
+	}
+	
+	/** 
+	 * Add/replaces recursively project sets from project set projects
+	 * for the loaded projects.
+	 * 
+	 * The project sets are loaded level by level: the entries of all sub project
+	 * sets of one level are added together (one batch per provider), then the sub
+	 * project sets of the projects loaded by this level form the next level.
+	 * Entries of projects that are already loaded (or that are contained in an
+	 * earlier sub project set of the same level) are skipped, so each project
+	 * is loaded once in the version of the nearest project set.
+	 */
+	protected void addSubProjectSetsForLoaded(ProjectSetContext context, List<IProject> loadedProjects, IProgressMonitor monitor, Map<String, ProjectSetEntry> loadedEntries) {
+		SubMonitor progress = SubMonitor.convert(monitor, 2);
+
+		// key = project name, value = entry of the project in the current level
+		Map<String, ProjectSetEntry> levelEntries = new HashMap<String, ProjectSetEntry>();
+		addToLevel(projectSetEntries, levelEntries, null);
+
+		while (!loadedProjects.isEmpty()) {
+			List<ProjectSet> subProjectSets = getSubProjectSets(loadedProjects, levelEntries);
+
+			// key = provider, value = entries of the next level
+			Map<String, List<ProjectSetEntry>> levelMap = new LinkedHashMap<String, List<ProjectSetEntry>>();
+			levelEntries = new HashMap<String, ProjectSetEntry>();
+			Iterator<ProjectSet> subProjectSetIterator = subProjectSets.iterator();
+			while (subProjectSetIterator.hasNext()) {
+				ProjectSet subPS = subProjectSetIterator.next();
+				List<ProjectSetEntry> subEntries = new ArrayList<ProjectSetEntry>(subPS.projectSetEntries);
+				pruneLoaded(subEntries, loadedEntries);
+				addToLevel(subEntries, levelEntries, levelMap);
+			}
+			if (levelMap.isEmpty()) {
+				break;
+			}
+
+			progress.setWorkRemaining(2);
+			progress.subTask(MessageFormat.format(Messages.getString("ProjectSet.Loading_{0,number,integer}_project_sets_4"), new Object[] {new Integer(subProjectSets.size())})); //$NON-NLS-1$
+			loadedProjects = addToWorkspace(context, progress.newChild(1), true, loadedEntries, levelMap);
+		}
+		progress.done();
+	}
+
+	/**
+	 * Adds the entries to the entries of a level (key = project name), skips entries
+	 * of projects that are already in the level. If levelMap is not null, the added
+	 * entries are also added to the list of their provider in levelMap.
+	 */
+	private void addToLevel(List<ProjectSetEntry> entries, Map<String, ProjectSetEntry> levelEntries, Map<String, List<ProjectSetEntry>> levelMap) {
+		Iterator<ProjectSetEntry> entryIterator = entries.iterator();
+		while (entryIterator.hasNext()) {
 			ProjectSetEntry psEntry = entryIterator.next();
-			// check if project of entry is in list of the created projects
-			boolean inListOfCreated = false;
-			for (int i = 0;((i < createdProjects.length) && (!inListOfCreated)); i++) {
-				if (createdProjects[i].getName().equals(psEntry.getProjectName())) {
-					inListOfCreated = true;
+			String projectName = psEntry.getProjectName();
+			if ((projectName != null) && (!levelEntries.containsKey(projectName))) {
+				levelEntries.put(projectName, psEntry);
+				if (levelMap != null) {
+					List<ProjectSetEntry> referencesForProvider = levelMap.get(psEntry.getProvider());
+					if (referencesForProvider == null) {
+						referencesForProvider = new ArrayList<ProjectSetEntry>();
+						levelMap.put(psEntry.getProvider(), referencesForProvider);
+					}
+					referencesForProvider.add(psEntry);
 				}
 			}
-			if (inListOfCreated) {
+		}
+	}
+
+	/**
+	 * Returns the sub project sets of the entries (key = project name) for the loaded projects
+	 */
+	private List<ProjectSet> getSubProjectSets(List<IProject> loadedProjects, Map<String, ProjectSetEntry> levelEntries) {
+		List<ProjectSet> subProjectSets = new ArrayList<ProjectSet>();
+		Iterator<IProject> projectIterator = loadedProjects.iterator();
+		while (projectIterator.hasNext()) {
+			ProjectSetEntry psEntry = levelEntries.remove(projectIterator.next().getName());
+			if (psEntry != null) {
 				psEntry.update();
 				ProjectSet subPS = psEntry.getSubProjectSet();
 				if (subPS != null) {
-					subPS.addToWorkspace(context, SubMonitor.convert(monitor, 1), null, true, loadedEntries);
+					subProjectSets.add(subPS);
 				}
 			}
-			monitor.worked(1);
 		}
-		monitor.done();
+		return subProjectSets;
 	}
 	
 	protected Map<String, List<ProjectSetEntry>> getProjectSetMap(List<String> projectNames) {
+		Set<String> projectNameSet = new HashSet<String>(projectNames);
 		Map<String, List<ProjectSetEntry>> prunedMap = new HashMap<String, List<ProjectSetEntry>>();
 		Iterator<Map.Entry<String, List<ProjectSetEntry>>> mapEntryIterator = getProjectSetMap().entrySet().iterator();
 		while (mapEntryIterator.hasNext()) {
@@ -769,7 +1156,7 @@ public class ProjectSet {
 			while (fullListIterator.hasNext()) {
 				ProjectSetEntry psEntry = fullListIterator.next();
 				String projectName = psEntry.getProjectName();
-				if (projectNames.indexOf(projectName) != -1) {
+				if (projectNameSet.contains(projectName)) {
 					prunedList.add(psEntry);
 				}
 			}
@@ -823,21 +1210,27 @@ public class ProjectSet {
 
 	/**
 	 * Checks for conflicts and return ROOT entries that have errors
+	 * 
+	 * The entries are grouped by project name in one pass, the entries of a group
+	 * conflict if they differ in provider or reference (tag conflict) or in the
+	 * resolved preferred location (path conflict). The errors of all entries are set
+	 * before they are propagated to the parent entries. The error descriptions are
+	 * created when they are requested.
 	 */
 	public ProjectSetEntry[] updateErrors() {
 		// reset errors, collect conflicts and set errors for undefined path variables
-		Map<String, String> cachedPathVariableMap = PreferredLocationsUtil.getProjectSetEntryIndependentPathVariableMap();
-		// maps for finding conflicts
-		Map<String, List<ProjectSetEntry>> projectNameToEntryListMap = new HashMap<String, List<ProjectSetEntry>>(); // key=project name, value=list of ps entries with the project name
-		Map<ProjectSetEntry, String> resolvedPreferredLocations = new HashMap<ProjectSetEntry, String>(); // key=ps entry, value = resolved location
-		
-		// maps and lists for entries with conflicts
-		Map<ProjectSetEntry, Collection<ProjectSetEntry>> tagConflictMap = new HashMap<ProjectSetEntry, Collection<ProjectSetEntry>>();
-		Map<ProjectSetEntry, Collection<ProjectSetEntry>> pathConflictMap = new HashMap<ProjectSetEntry, Collection<ProjectSetEntry>>();
-		Map<ProjectSetEntry, Collection<ProjectSetEntry>> samePathConflictMap = new HashMap<ProjectSetEntry, Collection<ProjectSetEntry>>();
-		List<ProjectSetEntry> entriesWithUndefinedVariables = new ArrayList<ProjectSetEntry>();
-		List<ProjectSetEntry> entriesLoadedToDifferentPath = new ArrayList<ProjectSetEntry>();
-		PathInclusionDetector pathInclusionDetector = new PathInclusionDetector();
+		Map<String, String> cachedPathVariableMap = PreferredLocationsUtil.getPathVariableSnapshot().getPathVariableMap();
+		// key = project name, value = list of ps entries with the project name
+		Map<String, List<ProjectSetEntry>> projectNameToEntryListMap = new LinkedHashMap<String, List<ProjectSetEntry>>();
+		// key = ps entry, value = key of the resolved location
+		Map<ProjectSetEntry, PathKey> resolvedPreferredLocations = new HashMap<ProjectSetEntry, PathKey>();
+		IPathInclusionDetector pathInclusionDetector = new SortedPathInclusionDetector();
+
+		// entries with errors, index = error type
+		List<List<ProjectSetEntry>> entriesWithErrors = new ArrayList<List<ProjectSetEntry>>();
+		for (int errorType = 0; errorType < ProjectSetEntry.NUMBER_OF_ERROR_TYPES; errorType++) {
+			entriesWithErrors.add(new ArrayList<ProjectSetEntry>());
+		}
 		
 		ProjectSetEntry[] allEntries = getProjectSetEntriesRecursively();
 		for (int i = 0; i < allEntries.length; i++) {
@@ -846,129 +1239,125 @@ public class ProjectSet {
 			projectSetEntry.resetError();
 			
 			// check for undefined path variable in preferred projects locations
-			String resolvedPrefLocation = projectSetEntry.getResolvedPreferredLocation(cachedPathVariableMap);
+			PathKey resolvedPrefLocation = projectSetEntry.getResolvedPreferredLocationKey(cachedPathVariableMap);
 			
 			if (resolvedPrefLocation == null) {
-				entriesWithUndefinedVariables.add(projectSetEntry);
+				setError(
+					projectSetEntry,
+					ProjectSetEntry.ERROR_TYPE_PATH_VARIABLE_UNDEFINED,
+					new ProjectSetErrorDescription(Messages.getString("ProjectSet.Undefined_variable")), //$NON-NLS-1$
+					entriesWithErrors);
 			} else {
 				// check if project is loaded in different location
 				if (projectSetEntry.getState() != ProjectSetEntry.STATE_NOT_LOADED) {
 					IProject projectInWorkspace = projectSetEntry.getProjectInWorkspace();
 					if ((projectInWorkspace != null) &&
-						(!ProjectSetUtil.pathEquals(resolvedPrefLocation, projectInWorkspace.getLocation().toOSString())) &&
+						(!resolvedPrefLocation.equals(PathKey.valueOf(projectInWorkspace.getLocation().toOSString()))) &&
 						ProjectSetUtil.isProviderSupportsPreferredLocalDirectory(projectSetEntry.getProvider())) {
-						entriesLoadedToDifferentPath.add(projectSetEntry);
+						setError(
+							projectSetEntry,
+							ProjectSetEntry.ERROR_TYPE_NOT_LOADED_TO_PREFERRED_PATH,
+							new ProjectSetErrorDescription(Messages.getString("ProjectSet.Not_loaded_to_preferred_path")), //$NON-NLS-1$
+							entriesWithErrors);
 					}
 				}
+				// check for entries with same preferred path but different projects
+				pathInclusionDetector.addPath(resolvedPrefLocation, projectSetEntry);
 			}
+			resolvedPreferredLocations.put(projectSetEntry, resolvedPrefLocation);
 			
-			// search for conflicts with other projects
-			
-			// compare with project set entries for the same project name
 			List<ProjectSetEntry> projectEntriesForSameProject = projectNameToEntryListMap.get(projectSetEntry.getProjectName());
 			if (projectEntriesForSameProject == null) {
-				// first entry for the project name, create a new List and put it in the map
-				List<ProjectSetEntry> newEntryList = new ArrayList<ProjectSetEntry>();
-				newEntryList.add(projectSetEntry);
-				projectNameToEntryListMap.put(projectSetEntry.getProjectName(), newEntryList);
-			} else {
-				// check that project is only used with one tag and one repository location
-				Iterator<ProjectSetEntry> psEntryIterator = projectEntriesForSameProject.iterator();
-				while (psEntryIterator.hasNext()) {
-					ProjectSetEntry compareEntry = psEntryIterator.next();
-					if (!projectSetEntry.contentEqualsIgnorePreferredLocation(compareEntry)) {
-						// conflict in tag or repository location
-						// add entry to conflict map
-						Collection<ProjectSetEntry> entryList = tagConflictMap.get(projectSetEntry);
-						if (entryList == null) {
-							entryList = new ArrayList<ProjectSetEntry>();
-							tagConflictMap.put(projectSetEntry, entryList);
-						}
-						entryList.add(compareEntry);
-						// add compared Entry to conflict map
-						Collection<ProjectSetEntry> entryListFromCompared = tagConflictMap.get(compareEntry);
-						if (entryListFromCompared == null) {
-							entryListFromCompared = new ArrayList<ProjectSetEntry>();
-							tagConflictMap.put(compareEntry, entryListFromCompared);
-						}
-						entryListFromCompared.add(projectSetEntry);
-					}
-					// check for conflicts in preferred projects locations
-					String compareResolvedPrefLocation = resolvedPreferredLocations.get(compareEntry);
-					if ((resolvedPrefLocation != null) &&
-					   (!ProjectSetUtil.pathEquals(resolvedPrefLocation, compareResolvedPrefLocation))&&
-					   ProjectSetUtil.isProviderSupportsPreferredLocalDirectory(projectSetEntry.getProvider())&&
-					   ProjectSetUtil.isProviderSupportsPreferredLocalDirectory(compareEntry.getProvider())) {
-						// preferred path conflict !
-						Collection<ProjectSetEntry> pathEntryList = pathConflictMap.get(projectSetEntry);
-						if (pathEntryList == null) {
-							pathEntryList = new ArrayList<ProjectSetEntry>();
-							pathConflictMap.put(projectSetEntry, pathEntryList);
-						}
-						pathEntryList.add(compareEntry);
-						Collection<ProjectSetEntry> pathEntryListFromCompared = pathConflictMap.get(compareEntry);
-						if (pathEntryListFromCompared == null) {
-							pathEntryListFromCompared = new ArrayList<ProjectSetEntry>();
-							pathConflictMap.put(compareEntry, pathEntryListFromCompared);
-						}
-						pathEntryListFromCompared.add(projectSetEntry);				    	
-					}					
-				}
-			}
-			
-			// check for entries with same preferred path but different projects
-			if(resolvedPrefLocation != null) {
-				// A null resolvedPrefLocation already causes an error at another point. 
-				pathInclusionDetector.addPath(new File(resolvedPrefLocation), projectSetEntry);
+				projectEntriesForSameProject = new ArrayList<ProjectSetEntry>();
+				projectNameToEntryListMap.put(projectSetEntry.getProjectName(), projectEntriesForSameProject);
 			}
-			resolvedPreferredLocations.put(projectSetEntry, resolvedPrefLocation);
+			projectEntriesForSameProject.add(projectSetEntry);
 		}
 		
-		samePathConflictMap = pathInclusionDetector.getConflicts();
+		// set errors for tag and path conflicts of entries with the same project name
+		Iterator<List<ProjectSetEntry>> groupIterator = projectNameToEntryListMap.values().iterator();
+		while (groupIterator.hasNext()) {
+			List<ProjectSetEntry> group = groupIterator.next();
+			if (group.size() > 1) {
+				setErrorsForProjectNameGroup(group, resolvedPreferredLocations, entriesWithErrors);
+			}
+		}
 		
-		// set errors for conflicts
-		setErrorsForConflictMap(
-			tagConflictMap,
-			ProjectSetEntry.ERROR_TYPE_TAG_CONFLICT,
-			Messages.getString("ProjectSet.Tag_Conflict_with"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.Tag_Conflict_in"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.AND_Tag_Conflict_in")); //$NON-NLS-1$
-		// set errors for path conflicts
-		setErrorsForConflictMap(
-			pathConflictMap,
-			ProjectSetEntry.ERROR_TYPE_PATH_CONFLICT,
-			Messages.getString("ProjectSet.Path_Conflict_with"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.Path_Conflict_in"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.AND_Path_Conflict_in")); //$NON-NLS-1$
+		// set errors for same path conflicts
 		setErrorsForConflictMap(
-			samePathConflictMap,
+			pathInclusionDetector.getConflicts(),
 			ProjectSetEntry.ERROR_TYPE_SAME_PATH_CONFLICT,
 			Messages.getString("ProjectSet.Duplicate_path_segment_with"),  //$NON-NLS-1$
-			Messages.getString("ProjectSet.Duplicate_path_segment_in"),  //$NON-NLS-1$
-			Messages.getString("ProjectSet.and_duplicate_path_segment_in")); 		 //$NON-NLS-1$
-		setErrorsForList(
-			entriesWithUndefinedVariables,
-			ProjectSetEntry.ERROR_TYPE_PATH_VARIABLE_UNDEFINED,
-			Messages.getString("ProjectSet.Undefined_variable"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.Undefined_variable_in"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.and_in")); //$NON-NLS-1$
-		setErrorsForList(
-			entriesLoadedToDifferentPath,
-			ProjectSetEntry.ERROR_TYPE_NOT_LOADED_TO_PREFERRED_PATH,
-			Messages.getString("ProjectSet.Not_loaded_to_preferred_path"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.Not_loaded_to_preferred_path_in"), //$NON-NLS-1$
-			Messages.getString("ProjectSet.and_not_loaded_to_preferred_path_in")); //$NON-NLS-1$
+			entriesWithErrors);
+		
+		// set errors for parent entries
+		setErrorsInParentEntries();
 		
 		Set<ProjectSetEntry> rootEntriesWithErrors = new HashSet<ProjectSetEntry>();
-		filterAndAddRootEntriesToSet(rootEntriesWithErrors, tagConflictMap.keySet());
-		filterAndAddRootEntriesToSet(rootEntriesWithErrors, pathConflictMap.keySet());
-		filterAndAddRootEntriesToSet(rootEntriesWithErrors, samePathConflictMap.keySet());
-		filterAndAddRootEntriesToSet(rootEntriesWithErrors, entriesWithUndefinedVariables);
-		filterAndAddRootEntriesToSet(rootEntriesWithErrors, entriesLoadedToDifferentPath);
+		for (int errorType = 0; errorType < ProjectSetEntry.NUMBER_OF_ERROR_TYPES; errorType++) {
+			filterAndAddRootEntriesToSet(rootEntriesWithErrors, entriesWithErrors.get(errorType));
+		}
 		
 		return rootEntriesWithErrors.toArray(new ProjectSetEntry[rootEntriesWithErrors.size()]);
 	}
 
+	/**
+	 * Sets the errors for the entries with the same project name:
+	 * a tag conflict for all entries if the entries differ in provider or reference and
+	 * a path conflict for the entries with a resolved preferred location if these
+	 * locations differ (only entries of providers that support preferred locations)
+	 */
+	protected void setErrorsForProjectNameGroup(List<ProjectSetEntry> group, Map<ProjectSetEntry, PathKey> resolvedPreferredLocations, List<List<ProjectSetEntry>> entriesWithErrors) {
+		// key = entry, value = provider and reference of the entry
+		Map<ProjectSetEntry, Object> referenceKeys = new HashMap<ProjectSetEntry, Object>();
+		Set<Object> differentReferenceKeys = new HashSet<Object>();
+		// entries with a preferred location that can be used
+		List<ProjectSetEntry> locationGroup = new ArrayList<ProjectSetEntry>();
+		// key = entry, value = key of the resolved preferred location of the entry
+		Map<ProjectSetEntry, Object> locationKeys = new HashMap<ProjectSetEntry, Object>();
+		Set<Object> differentLocationKeys = new HashSet<Object>();
+
+		Iterator<ProjectSetEntry> entryIterator = group.iterator();
+		while (entryIterator.hasNext()) {
+			ProjectSetEntry psEntry = entryIterator.next();
+			Object referenceKey = Arrays.asList(new String[] {psEntry.getProvider(), psEntry.getProjectReference()});
+			referenceKeys.put(psEntry, referenceKey);
+			differentReferenceKeys.add(referenceKey);
+
+			PathKey locationKey = resolvedPreferredLocations.get(psEntry);
+			if ((locationKey != null) && ProjectSetUtil.isProviderSupportsPreferredLocalDirectory(psEntry.getProvider())) {
+				locationGroup.add(psEntry);
+				locationKeys.put(psEntry, locationKey);
+				differentLocationKeys.add(locationKey);
+			}
+		}
+
+		if (differentReferenceKeys.size() > 1) {
+			String errorText = Messages.getString("ProjectSet.Tag_Conflict_with"); //$NON-NLS-1$
+			entryIterator = group.iterator();
+			while (entryIterator.hasNext()) {
+				ProjectSetEntry psEntry = entryIterator.next();
+				setError(
+					psEntry,
+					ProjectSetEntry.ERROR_TYPE_TAG_CONFLICT,
+					new ProjectSetErrorDescription(errorText, psEntry, group, referenceKeys),
+					entriesWithErrors);
+			}
+		}
+		if (differentLocationKeys.size() > 1) {
+			String errorText = Messages.getString("ProjectSet.Path_Conflict_with"); //$NON-NLS-1$
+			entryIterator = locationGroup.iterator();
+			while (entryIterator.hasNext()) {
+				ProjectSetEntry psEntry = entryIterator.next();
+				setError(
+					psEntry,
+					ProjectSetEntry.ERROR_TYPE_PATH_CONFLICT,
+					new ProjectSetErrorDescription(errorText, psEntry, locationGroup, locationKeys),
+					entriesWithErrors);
+			}
+		}
+	}
+
 	protected void filterAndAddRootEntriesToSet(Set<ProjectSetEntry> rootEntrySet, Collection<ProjectSetEntry> psEntries) {
 		Iterator<ProjectSetEntry> entryIterator = psEntries.iterator();
 		while (entryIterator.hasNext()) {
@@ -979,82 +1368,102 @@ public class ProjectSet {
 		}
 	}
 
-	protected void setErrorsForConflictMap(Map<ProjectSetEntry, Collection<ProjectSetEntry>> conflictMap, int errorType, String errorText, String subErrorText, String andErrorText) {
+	protected void setErrorsForConflictMap(Map<ProjectSetEntry, Collection<ProjectSetEntry>> conflictMap, int errorType, String errorText, List<List<ProjectSetEntry>> entriesWithErrors) {
 			
 		Iterator<Map.Entry<ProjectSetEntry, Collection<ProjectSetEntry>>> conflictMapIterator = conflictMap.entrySet().iterator();
 		while (conflictMapIterator.hasNext()) {
 			Map.Entry<ProjectSetEntry, Collection<ProjectSetEntry>> mapEntry = conflictMapIterator.next();
-			ProjectSetEntry psEntry = mapEntry.getKey();
-			Iterator<ProjectSetEntry> conflictEntryIterator = mapEntry.getValue().iterator();
-			// set error state
-			psEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR);
-			// calculate and set conflict description
-			StringBuffer errorDescrBuffer = new StringBuffer();
-			errorDescrBuffer.append(errorText);
-			errorDescrBuffer.append(" "); //$NON-NLS-1$
-			while (conflictEntryIterator.hasNext()) {
-				ProjectSetEntry conflictEntry = conflictEntryIterator.next();
-				errorDescrBuffer.append(conflictEntry.getTreePositionString());
-				if (conflictEntryIterator.hasNext()) {
-					errorDescrBuffer.append(", "); //$NON-NLS-1$
-				}
-			}
-			psEntry.setErrorDescription(errorType, errorDescrBuffer.toString());
-			// set errors for parent entries
-			setErrorInParentEntries(
-				psEntry,
+			setError(
+				mapEntry.getKey(),
 				errorType,
-				subErrorText,
-				andErrorText);
+				new ProjectSetErrorDescription(errorText, mapEntry.getValue()),
+				entriesWithErrors);
 		}		
 	}
 
-	protected void setErrorsForList(List<ProjectSetEntry> entriesWithErrors, int errorType, String errorText, String subErrorText, String andErrorText) {
-		Iterator<ProjectSetEntry> entryIterator = entriesWithErrors.iterator();
+	/**
+	 * Sets the error state and description of the entry and adds the entry to the entries with errors
+	 */
+	private void setError(ProjectSetEntry psEntry, int errorType, ProjectSetErrorDescription errorDescription, List<List<ProjectSetEntry>> entriesWithErrors) {
+		psEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR);
+		psEntry.setErrorDescription(errorType, errorDescription);
+		entriesWithErrors.get(errorType).add(psEntry);
+	}
+	
+	/**
+	 * Sets the errors of the entries with errors in their sub project sets
+	 * (ERROR_STATE_ERROR_ONLY_IN_SUB_PS or ERROR_STATE_ERROR_ALSO_IN_SUB_PS)
+	 * for all error types in one post-order pass over the project set tree,
+	 * every entry is visited once (like in accept)
+	 */
+	protected void setErrorsInParentEntries() {
+		String[] subErrorTexts = new String[ProjectSetEntry.NUMBER_OF_ERROR_TYPES];
+		String[] andErrorTexts = new String[ProjectSetEntry.NUMBER_OF_ERROR_TYPES];
+		for (int errorType = 0; errorType < ProjectSetEntry.NUMBER_OF_ERROR_TYPES; errorType++) {
+			subErrorTexts[errorType] = Messages.getString(SUB_ERROR_TEXT_KEYS[errorType]);
+			andErrorTexts[errorType] = Messages.getString(AND_ERROR_TEXT_KEYS[errorType]);
+		}
+		Set<ProjectSetEntry> visitedEntries = Collections.newSetFromMap(new IdentityHashMap<ProjectSetEntry, Boolean>());
+		Iterator<ProjectSetEntry> entryIterator = projectSetEntries.iterator();
 		while (entryIterator.hasNext()) {
 			ProjectSetEntry psEntry = entryIterator.next();
-
-			psEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR);
-			psEntry.setErrorDescription(errorType, errorText);
-			
-			setErrorInParentEntries(psEntry, errorType, subErrorText, andErrorText);
-		}		
+			if (visitedEntries.add(psEntry)) {
+				setErrorsInParentEntry(psEntry, visitedEntries, subErrorTexts, andErrorTexts);
+			}
+		}
 	}
-	
-	protected void setErrorInParentEntries(ProjectSetEntry psEntry, int errorType, String subErrorText, String andErrorText) {
-			ProjectSetEntry currentPSEntry = psEntry;
-			do {
-				ProjectSet parentPS = currentPSEntry.getProjectSet();
-				if (parentPS != null) {
-					currentPSEntry = parentPS.getParentProjectSetEntry();
-					if (currentPSEntry != null) {
-						if (currentPSEntry.getErrorState(errorType) == ProjectSetEntry.ERROR_STATE_OK) {
-							currentPSEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR_ONLY_IN_SUB_PS);
-							currentPSEntry.setErrorDescription(
-								errorType,
-								subErrorText + " " + //$NON-NLS-1$
-								psEntry.getTreePositionString());
-						} else
-						if ((currentPSEntry.getErrorState(errorType) == ProjectSetEntry.ERROR_STATE_ERROR_ONLY_IN_SUB_PS) ||
-							(currentPSEntry.getErrorState(errorType) == ProjectSetEntry.ERROR_STATE_ERROR_ALSO_IN_SUB_PS)) {
-							currentPSEntry.setErrorDescription(
-							    errorType,
-								currentPSEntry.getErrorDescription(errorType) +
-								", " + psEntry.getTreePositionString());  //$NON-NLS-1$
-						} else 						 
-						if (currentPSEntry.getErrorState(errorType) == ProjectSetEntry.ERROR_STATE_ERROR) {
-							currentPSEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR_ALSO_IN_SUB_PS);
-							currentPSEntry.setErrorDescription(
-								errorType,
-								currentPSEntry.getErrorDescription(errorType) +
-								" " + andErrorText + " " + //$NON-NLS-1$ //$NON-NLS-2$
-								psEntry.getTreePositionString());
-						} 
+
+	/**
+	 * Sets the errors of the entry for the errors in its sub project set,
+	 * after setting them for the entries of the sub project set
+	 */
+	private void setErrorsInParentEntry(ProjectSetEntry psEntry, Set<ProjectSetEntry> visitedEntries, String[] subErrorTexts, String[] andErrorTexts) {
+		ProjectSet subPS = psEntry.getSubProjectSet();
+		if (subPS == null) {
+			return;
+		}
+		Iterator<ProjectSetEntry> subEntryIterator = subPS.projectSetEntries.iterator();
+		while (subEntryIterator.hasNext()) {
+			ProjectSetEntry subEntry = subEntryIterator.next();
+			if (visitedEntries.add(subEntry)) {
+				setErrorsInParentEntry(subEntry, visitedEntries, subErrorTexts, andErrorTexts);
+				for (int errorType = 0; errorType < ProjectSetEntry.NUMBER_OF_ERROR_TYPES; errorType++) {
+					if (subEntry.getErrorState(errorType) != ProjectSetEntry.ERROR_STATE_OK) {
+						getLazyErrorDescription(psEntry, errorType, true).addSubEntry(
+							subEntry,
+							getLazyErrorDescription(subEntry, errorType, false),
+							subErrorTexts[errorType],
+							andErrorTexts[errorType]);
 					}
-				} else{
-					currentPSEntry = null;
-				}			
-			} while (currentPSEntry != null);		
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the error description of the entry, the entry gets the error state
+	 * ERROR_STATE_ERROR_ONLY_IN_SUB_PS or ERROR_STATE_ERROR_ALSO_IN_SUB_PS if subError is true
+	 */
+	private ProjectSetErrorDescription getLazyErrorDescription(ProjectSetEntry psEntry, int errorType, boolean subError) {
+		ProjectSetErrorDescription errorDescription = psEntry.getLazyErrorDescription(errorType);
+		int errorState = psEntry.getErrorState(errorType);
+		if (errorState == ProjectSetEntry.ERROR_STATE_OK) {
+			errorDescription = new ProjectSetErrorDescription(null);
+			psEntry.setErrorDescription(errorType, errorDescription);
+		} else if (errorDescription == null) {
+			// description set as text
+			String errorText = (errorState == ProjectSetEntry.ERROR_STATE_ERROR_ONLY_IN_SUB_PS) ? null : psEntry.getErrorDescription(errorType);
+			errorDescription = new ProjectSetErrorDescription(errorText);
+			psEntry.setErrorDescription(errorType, errorDescription);
+		}
+		if (subError) {
+			if (errorState == ProjectSetEntry.ERROR_STATE_OK) {
+				psEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR_ONLY_IN_SUB_PS);
+			} else if (errorState == ProjectSetEntry.ERROR_STATE_ERROR) {
+				psEntry.setErrorState(errorType, ProjectSetEntry.ERROR_STATE_ERROR_ALSO_IN_SUB_PS);
+			}
+		}
+		return errorDescription;
 	}
 
 		
@@ -24,7 +24,11 @@ package com.csc.dip.projectset;
  */
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
@@ -32,9 +36,14 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
 
 
 public class ProjectSetBuilder extends IncrementalProjectBuilder {
@@ -45,6 +54,53 @@ public class ProjectSetBuilder extends IncrementalProjectBuilder {
 	 */
 	private static Vector<IProjectSetBuilderListener> listeners = new Vector<IProjectSetBuilderListener>();
 
+	/**
+	 * The markers that should exist after updateErrorMarkers,
+	 * collected by checkAndCreateMarkers
+	 */
+	private List<MarkerDescription> desiredMarkers = new ArrayList<MarkerDescription>();
+
+	// if true, checkAndCreateMarkers checks a detached project set (see ProjectSet.createDetached)
+	private boolean detachedValidation = false;
+
+	// the project set checked by checkAndCreateMarkers, null if no project set was checked
+	private ProjectSet checkedProjectSet;
+
+	/**
+	 * The attributes of a project set marker that are compared
+	 * to decide if an existing marker can be kept
+	 */
+	private static class MarkerDescription {
+
+		private final IResource resource;
+		private final String type;
+		private final int severity;
+		private final String message;
+
+		public MarkerDescription(IResource resource, String type, int severity, String message) {
+			super();
+			this.resource = resource;
+			this.type = type;
+			this.severity = severity;
+			this.message = message;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof MarkerDescription)) {
+				return false;
+			}
+			MarkerDescription other = (MarkerDescription) object;
+			return resource.equals(other.resource) &&
+				type.equals(other.type) &&
+				(severity == other.severity) &&
+				((message == null) ? (other.message == null) : message.equals(other.message));
+		}
+
+		public int hashCode() {
+			return resource.hashCode() ^ type.hashCode() ^ severity ^ ((message == null) ? 0 : message.hashCode());
+		}
+	}
+
 	/**
 	 * Constructor for ProjectSetBuilder.
 	 */
@@ -58,19 +114,164 @@ public class ProjectSetBuilder extends IncrementalProjectBuilder {
 	protected IProject[] build(int kind, Map args, IProgressMonitor monitor)
 		throws CoreException {
 				
-		updateErrorMarkers(getProject());
+		if (kind == FULL_BUILD) {
+			// a rebuild retrieves all references from the providers
+			ProjectSetPlugin.getDefault().getProjectReferenceCache().clear();
+		}
+		validate(getProject());
 		
 		return new IProject[0];
 	}
 
 	/**
-	 * Updates the project set markers for the project
+	 * Updates the project set markers for the project, in a ProjectSetValidationJob
+	 * if asynchronous validation is enabled in the preferences
+	 */
+	protected void validate(IProject project) {
+		if (isAsynchronousValidation()) {
+			ProjectSetValidationJob.validate(project);
+		} else {
+			updateErrorMarkers(project);
+		}
+	}
+
+	/**
+	 * Returns true if the project sets are validated in ProjectSetValidationJobs
+	 */
+	static boolean isAsynchronousValidation() {
+		return Platform.getPreferencesService().getBoolean(ProjectSetPlugin.PLUGIN_ID, IProjectSetConstants.ASYNCHRONOUS_VALIDATION_PREFERENCE, false, null);
+	}
+
+	/**
+	 * Updates the project set markers for the project.
+	 * Only the markers that differ from the existing ones are deleted or
+	 * created (in one workspace operation), the listeners are notified
+	 * only if markers changed.
 	 */	
 	protected void updateErrorMarkers(IProject project) {
+		updateErrorMarkers(project, new NullProgressMonitor());
+	}
+
+	/**
+	 * Updates the project set markers for the project.
+	 * If the monitor is canceled before the markers are updated
+	 * an OperationCanceledException is thrown and the markers are not changed.
+	 */	
+	protected void updateErrorMarkers(final IProject project, IProgressMonitor monitor) {
+		updateErrorMarkers(project, monitor, null);
+	}
+
+	/**
+	 * Updates the project set markers for the project.
+	 * If an index is given, a detached project set is checked, so the shared
+	 * project sets (walked by the index) are not changed, and the project is
+	 * re-indexed with the checked project set. The lock of the index is only
+	 * held to replace the entries of the project.
+	 */	
+	void updateErrorMarkers(final IProject project, IProgressMonitor monitor, ProjectSetIndex index) {
+
+		final List<MarkerDescription> markers;
+		if (index == null) {
+			markers = collectErrorMarkers(project, monitor);
+		} else {
+			detachedValidation = true;
+			try {
+				markers = collectErrorMarkers(project, monitor);
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				index.update(project, checkedProjectSet);
+			} finally {
+				detachedValidation = false;
+				checkedProjectSet = null;
+			}
+		}
+		if (monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+
+		final boolean[] changed = new boolean[1];
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				changed[0] = updateMarkers(project, markers);
+			}
+		};
+		try {
+			IWorkspace workspace = ProjectSetPlugin.getWorkspace();
+			workspace.run(runnable, workspace.getRuleFactory().markerRule(project), IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			e.printStackTrace();
+		}
+		if (changed[0]) {
+			fireMarkersChanged(project);
+		}
+	}
+
+	/**
+	 * Checks the project set of the project and returns the desired markers
+	 */
+	private List<MarkerDescription> collectErrorMarkers(IProject project, IProgressMonitor monitor) {
+		desiredMarkers.clear();
+		try {
+			checkAndCreateMarkers(project, monitor);
+			return new ArrayList<MarkerDescription>(desiredMarkers);
+		} finally {
+			desiredMarkers.clear();
+		}
+	}
+
+	/**
+	 * Deletes the existing project set markers of the project that are not in the
+	 * list of markers and creates the markers of the list that do not exist.
+	 * Returns true if a marker was deleted or created.
+	 */
+	private boolean updateMarkers(IProject project, List<MarkerDescription> markers) throws CoreException {
+		// key = desired marker, value = number of missing markers with this description
+		Map<MarkerDescription, Integer> missingMarkers = new LinkedHashMap<MarkerDescription, Integer>();
+		Iterator<MarkerDescription> markerIterator = markers.iterator();
+		while (markerIterator.hasNext()) {
+			MarkerDescription description = markerIterator.next();
+			Integer count = missingMarkers.get(description);
+			missingMarkers.put(description, new Integer((count == null) ? 1 : count.intValue() + 1));
+		}
+
+		boolean changed = false;
+		if (project.isAccessible()) {
+			IMarker[] existingMarkers = project.findMarkers(IProjectSetConstants.PSF_MARKER_ID, true, IResource.DEPTH_INFINITE);
+			for (int i = 0; i < existingMarkers.length; i++) {
+				IMarker marker = existingMarkers[i];
+				MarkerDescription description =
+					new MarkerDescription(
+						marker.getResource(),
+						marker.getType(),
+						marker.getAttribute(IMarker.SEVERITY, -1),
+						marker.getAttribute(IMarker.MESSAGE, null));
+				Integer count = missingMarkers.get(description);
+				if (count == null) {
+					marker.delete();
+					changed = true;
+				} else if (count.intValue() == 1) {
+					missingMarkers.remove(description);
+				} else {
+					missingMarkers.put(description, new Integer(count.intValue() - 1));
+				}
+			}
+		}
 
-		removePsfMarkers(project);		
-		checkAndCreateMarkers(project);
-		fireMarkersChanged(project);
+		Iterator<Map.Entry<MarkerDescription, Integer>> missingIterator = missingMarkers.entrySet().iterator();
+		while (missingIterator.hasNext()) {
+			Map.Entry<MarkerDescription, Integer> mapEntry = missingIterator.next();
+			MarkerDescription description = mapEntry.getKey();
+			for (int i = 0; i < mapEntry.getValue().intValue(); i++) {
+				if (description.resource.exists()) {
+					IMarker marker = description.resource.createMarker(description.type);
+					marker.setAttribute(IMarker.SEVERITY, description.severity);
+					marker.setAttribute(IMarker.MESSAGE, description.message);
+					changed = true;
+				}
+			}
+		}
+		return changed;
 	}
 
 	/**
@@ -87,9 +288,18 @@ public class ProjectSetBuilder extends IncrementalProjectBuilder {
 	}
 
 	/**
-	 * Checks for conflicts and create error markers for the project
+	 * Checks for conflicts and collects the error markers for the project
 	 */
 	protected void checkAndCreateMarkers(IProject project) {
+		checkAndCreateMarkers(project, new NullProgressMonitor());
+	}
+
+	/**
+	 * Checks for conflicts and collects the error markers for the project,
+	 * throws an OperationCanceledException if the monitor is canceled
+	 * (the monitor is also checked while the entries are updated)
+	 */
+	protected void checkAndCreateMarkers(IProject project, IProgressMonitor monitor) {
 		ProjectSetNature psNature = null;
 		try {
 			psNature =
@@ -116,9 +326,19 @@ public class ProjectSetBuilder extends IncrementalProjectBuilder {
 							psDescriptionFile,
 							MessageFormat.format(Messages.getString("ProjectSetBuilder.missing_PSF_file_named_{0}_1"), new Object[] {projectSetFile.getFullPath().toString()})); //$NON-NLS-1$
 					} else {
-						ProjectSet projectSet= psNature.getProjectSet();
-						projectSet.updateEntries();
+						ProjectSet projectSet;
+						if (detachedValidation) {
+							projectSet = ProjectSet.createDetached(projectSetFile);
+							projectSet.update(new HashSet<IFile>(), false, monitor);
+						} else {
+							projectSet = psNature.getProjectSet();
+							projectSet.updateEntries(monitor);
+						}
+						checkedProjectSet = projectSet;
 						ProjectSetEntry[] errorEntries = projectSet.updateErrors();
+						if (monitor.isCanceled()) {
+							throw new OperationCanceledException();
+						}
 	
 						for (int i = 0; i < errorEntries.length; i++) {
 							ProjectSetEntry projectSetEntry = errorEntries[i];
@@ -194,19 +414,12 @@ public class ProjectSetBuilder extends IncrementalProjectBuilder {
 	}
 
 	/**
-	 * Creates a marker for the resource
+	 * Adds a marker for the resource to the markers
+	 * that are created by updateErrorMarkers
 	 */		
 	protected void createMarker(IResource resource, String type, int severity, String message) {
 		if ((resource != null) && (resource.exists())) {
-
-			try {
-				IMarker marker =
-					resource.createMarker(type);
-				marker.setAttribute(IMarker.SEVERITY, severity);
-				marker.setAttribute(IMarker.MESSAGE, message);
-			} catch (CoreException e) {
-				e.printStackTrace();
-			}
+			desiredMarkers.add(new MarkerDescription(resource, type, severity, message));
 		}
 	}
 
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.team.core.RepositoryProvider;
+
+/**
+ * This class is used by ProjectSetPlugin to find the project set projects
+ * whose markers may be affected by a resource delta (using the ProjectSetIndex).
+ *
+ * A project set project is affected if its own project set files changed
+ * (psf, ppl or .psproject) or if its project set refers (recursively) to a
+ * project that was added, removed, opened, closed, moved, whose description
+ * or team metadata changed or whose project set files changed.
+ * Changes of markers only are ignored.
+ *
+ * The team metadata of some providers (like a Git repository or a SVN working
+ * copy) can be outside the project, so e.g. a branch switch only shows up as
+ * changed files. Any added, removed or changed file or folder in a project of
+ * such a provider (see ProjectReferenceCache.isCachedProvider) counts as a
+ * change of the project.
+ */
+class ProjectSetDeltaAnalyser implements IResourceDeltaVisitor {
+
+	private static final String[] TEAM_METADATA_NAMES = {"CVS", ".svn", ".git"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	private static final int PROJECT_CHANGE_FLAGS = IResourceDelta.OPEN | IResourceDelta.DESCRIPTION | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO | IResourceDelta.REPLACED;
+	private static final int FILE_CHANGE_FLAGS = IResourceDelta.CONTENT | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO | IResourceDelta.REPLACED;
+
+	// names of the projects that may be in a different state
+	private Set<String> changedProjectNames = new HashSet<String>();
+
+	// projects with changed project set files
+	private Set<IProject> changedProjectSetProjects = new HashSet<IProject>();
+
+	// projects of the delta whose team metadata may be outside the project
+	private Set<IProject> externalMetadataProjects = new HashSet<IProject>();
+
+	/**
+	 * Constructor for ProjectSetDeltaAnalyser.
+	 */
+	public ProjectSetDeltaAnalyser() {
+		super();
+	}
+
+	/**
+	 * Collects the changes of the delta
+	 */
+	public void analyse(IResourceDelta delta) throws CoreException {
+		delta.accept(this, IContainer.INCLUDE_TEAM_PRIVATE_MEMBERS);
+	}
+
+	/**
+	 * Returns true if no change that affects project set projects was found
+	 */
+	public boolean isEmpty() {
+		return changedProjectNames.isEmpty() && changedProjectSetProjects.isEmpty();
+	}
+
+	public boolean visit(IResourceDelta delta) throws CoreException {
+		IResource resource = delta.getResource();
+		switch (resource.getType()) {
+			case IResource.ROOT :
+				return true;
+			case IResource.PROJECT :
+				if (isAddedOrRemoved(delta) || ((delta.getFlags() & PROJECT_CHANGE_FLAGS) != 0)) {
+					changedProjectNames.add(resource.getName());
+					changedProjectSetProjects.add((IProject) resource);
+				}
+				if (hasExternalMetadata((IProject) resource)) {
+					externalMetadataProjects.add((IProject) resource);
+				}
+				return true;
+			case IResource.FOLDER :
+				if (isTeamMetadata(resource)) {
+					changedProjectNames.add(resource.getProject().getName());
+					return false;
+				}
+				if (isAddedOrRemoved(delta) && externalMetadataProjects.contains(resource.getProject())) {
+					changedProjectNames.add(resource.getProject().getName());
+				}
+				return true;
+			case IResource.FILE :
+				if (isAddedOrRemoved(delta) || ((delta.getFlags() & FILE_CHANGE_FLAGS) != 0)) {
+					if (isTeamMetadata(resource)) {
+						changedProjectNames.add(resource.getProject().getName());
+					} else if (isProjectSetFile(resource)) {
+						changedProjectNames.add(resource.getProject().getName());
+						changedProjectSetProjects.add(resource.getProject());
+					} else if (externalMetadataProjects.contains(resource.getProject())) {
+						changedProjectNames.add(resource.getProject().getName());
+					}
+				}
+				return false;
+			default :
+				return false;
+		}
+	}
+
+	private boolean isAddedOrRemoved(IResourceDelta delta) {
+		return (delta.getKind() & (IResourceDelta.ADDED | IResourceDelta.REMOVED)) != 0;
+	}
+
+	/**
+	 * Returns true if the project is shared by a provider whose
+	 * team metadata can be outside the project
+	 */
+	private boolean hasExternalMetadata(IProject project) {
+		if (!project.isAccessible()) {
+			return false;
+		}
+		RepositoryProvider provider = RepositoryProvider.getProvider(project);
+		return (provider != null) && !ProjectReferenceCache.isCachedProvider(provider.getID());
+	}
+
+	private boolean isTeamMetadata(IResource resource) {
+		if (resource.isTeamPrivateMember()) {
+			return true;
+		}
+		String name = resource.getName();
+		for (int i = 0; i < TEAM_METADATA_NAMES.length; i++) {
+			if (TEAM_METADATA_NAMES[i].equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isProjectSetFile(IResource resource) {
+		if (resource.getName().equals(ProjectSetNature.PS_PROJECT_DESCRIPTION_FILENAME)) {
+			return true;
+		}
+		String extension = resource.getFileExtension();
+		return (extension != null) &&
+			(extension.equalsIgnoreCase(IProjectSetConstants.PROJECT_SET_FILE_EXTENSION) ||
+			 extension.equalsIgnoreCase(PreferredLocationsUtil.PPL_FILE_EXTENSION));
+	}
+
+	/**
+	 * Returns the projects with changed project set files or a changed project description
+	 */
+	public Set<IProject> getChangedProjectSetProjects() {
+		return changedProjectSetProjects;
+	}
+
+	/**
+	 * Returns the project set projects (of the specified ones) that are affected by the collected changes
+	 */
+	public List<IProject> getAffectedProjects(List<IProject> projectSetProjects, ProjectSetIndex index) {
+		Set<IProject> referencingProjects = index.getReferencingProjectSetProjects(changedProjectNames);
+		List<IProject> affectedProjects = new ArrayList<IProject>();
+		Iterator<IProject> projectIterator = projectSetProjects.iterator();
+		while (projectIterator.hasNext()) {
+			IProject project = projectIterator.next();
+			if (changedProjectSetProjects.contains(project) || referencingProjects.contains(project)) {
+				affectedProjects.add(project);
+			}
+		}
+		return affectedProjects;
+	}
+}
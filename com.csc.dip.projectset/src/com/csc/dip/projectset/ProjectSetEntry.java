@@ -33,7 +33,9 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.team.core.RepositoryProvider;
 import org.eclipse.team.core.TeamException;
 
@@ -45,6 +47,72 @@ public class ProjectSetEntry implements IAdaptable {
 	public static final int STATE_LOADED_NOT_SHARED = 2;
 	public static final int STATE_LOADED_DIFFERENT = 3;
 
+	// maximum depth of cached tree positions, deeper positions are computed on each request
+	private static final int MAX_CACHED_TREE_DEPTH = 100;
+
+	private static class TreePosition {
+
+		private final String positionString;
+		private final ProjectSet projectSet; // project set of the entry when the position was computed
+		private final File projectSetFile; // file of the project set
+		private final ProjectSetEntry parentEntry; // parent entry of the project set
+		private final TreePosition parentPosition; // position of the parent entry, null if there is none
+
+		public TreePosition(String positionString, ProjectSet projectSet, File projectSetFile, ProjectSetEntry parentEntry, TreePosition parentPosition) {
+			super();
+			this.positionString = positionString;
+			this.projectSet = projectSet;
+			this.projectSetFile = projectSetFile;
+			this.parentEntry = parentEntry;
+			this.parentPosition = parentPosition;
+		}
+
+		public boolean isValid(ProjectSet projectSet, File projectSetFile, ProjectSetEntry parentEntry, TreePosition parentPosition) {
+			return (this.projectSet == projectSet) &&
+				this.projectSetFile.equals(projectSetFile) &&
+				(this.parentEntry == parentEntry) &&
+				(this.parentPosition == parentPosition);
+		}
+
+		/**
+		 * Returns true if the file is the project set file of this position or of a parent position
+		 */
+		public boolean containsProjectSetFile(File file) {
+			TreePosition position = this;
+			while (position != null) {
+				if (file.equals(position.projectSetFile)) {
+					return true;
+				}
+				position = position.parentPosition;
+			}
+			return false;
+		}
+	}
+
+	private static class ResolvedLocation {
+
+		private final String unresolvedLocation;
+		private final long pathVariableVersion; // version of the path variables used to resolve the location
+		private final ParsedProjectReference parsedReference; // project name and tag used to resolve the location
+		private final String resolvedLocation; // null if a path variable is undefined
+		private final PathKey pathKey; // comparison key of the resolved location
+
+		public ResolvedLocation(String unresolvedLocation, long pathVariableVersion, ParsedProjectReference parsedReference, String resolvedLocation) {
+			super();
+			this.unresolvedLocation = unresolvedLocation;
+			this.pathVariableVersion = pathVariableVersion;
+			this.parsedReference = parsedReference;
+			this.resolvedLocation = resolvedLocation;
+			this.pathKey = PathKey.valueOf(resolvedLocation);
+		}
+
+		public boolean isValid(String unresolvedLocation, long pathVariableVersion, ParsedProjectReference parsedReference) {
+			return ((this.unresolvedLocation == null) ? (unresolvedLocation == null) : this.unresolvedLocation.equals(unresolvedLocation)) &&
+				(this.pathVariableVersion == pathVariableVersion) &&
+				(this.parsedReference == parsedReference);
+		}
+	}
+
 	// constants for error types
 	public static final int NUMBER_OF_ERROR_TYPES =5;
 	public static final int ERROR_TYPE_TAG_CONFLICT = 0;
@@ -63,14 +131,19 @@ public class ProjectSetEntry implements IAdaptable {
 	private ProjectSet projectSet; // the project set this instance is part of
 	private String provider;
 	private String projectReference;
+	private ParsedProjectReference parsedReference; // created on first use, reset if provider or reference changes
 	
 	private String unresolvedPreferredLocation;
 	
 	private int state;
 	private ProjectSet subProjectSet;
+	private Set<IFile> pendingUpdatedProjectSetFiles; // not null if the sub project set is updated on first request
 	
 	private int[] errorStates = {ERROR_STATE_OK, ERROR_STATE_OK, ERROR_STATE_OK, ERROR_STATE_OK, ERROR_STATE_OK};
 	private String[] errorDescriptions = {"","","","",""}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	private volatile TreePosition treePosition; // cached result of getTreePositionString
+	private volatile ResolvedLocation resolvedLocation; // cached result of getResolvedPreferredLocation
+	private ProjectSetErrorDescription[] lazyErrorDescriptions = new ProjectSetErrorDescription[NUMBER_OF_ERROR_TYPES]; // set by updateErrors, text created on first use
 	
 	
 	/**
@@ -81,6 +154,27 @@ public class ProjectSetEntry implements IAdaptable {
 		this.projectSet = projectSet;
 		this.provider = provider;
 		this.projectReference = projectReference;
+		parsedReference = null;
+		fireProjectSetEntryChanged();
+	}
+
+	/**
+	 * Constructor for ProjectSetEntry with a parsed reference of a project set file snapshot.
+	 * The parsed reference is shared until the provider or the reference is changed.
+	 */
+	ProjectSetEntry(ProjectSet projectSet, ParsedProjectReference parsedReference) {
+		this(projectSet, parsedReference.getProvider(), parsedReference.getProjectReference());
+		this.parsedReference = parsedReference;
+	}
+
+	/**
+	 * Informs the project set that the provider or reference has changed
+	 */
+	private void fireProjectSetEntryChanged() {
+		treePosition = null;
+		if (projectSet != null) {
+			projectSet.projectSetEntryChanged(this);
+		}
 	}
 
 	/**
@@ -112,11 +206,11 @@ public class ProjectSetEntry implements IAdaptable {
 		
 		String loadedReferences[] = null;
 		String projectSetFilename = null;
-		if (projectSet != null) {
+		if ((projectSet != null) && (projectSet.getProjectSetFile() != null) && (projectSet.getProjectSetFile().getLocation() != null)) {
 			projectSetFilename = projectSet.getProjectSetFilename();
 		}
 		try {
-			loadedReferences = prAnalyser.asReference(projects, new ProjectSetContext(), new NullProgressMonitor(), projectSetFilename);
+			loadedReferences = ProjectSetPlugin.getDefault().getProjectReferenceCache().getReferences(projects, provider, projectSetFilename);
 			if (loadedReferences != null) {
 				projectReference = loadedReferences[0];
 			}
@@ -144,12 +238,15 @@ public class ProjectSetEntry implements IAdaptable {
 	public ProjectSetEntry copy() {
 		ProjectSetEntry copy = new ProjectSetEntry(projectSet, provider, projectReference);
 		
+		copy.parsedReference = parsedReference;
+		copy.resolvedLocation = resolvedLocation;
 		copy.unresolvedPreferredLocation = unresolvedPreferredLocation;
 		copy.state = state;
-		copy.subProjectSet = subProjectSet;
+		copy.subProjectSet = getSubProjectSet();
 
 		System.arraycopy(errorStates, 0, copy.errorStates, 0, errorStates.length);
 		System.arraycopy(errorDescriptions, 0, copy.errorDescriptions, 0, errorDescriptions.length);
+		System.arraycopy(lazyErrorDescriptions, 0, copy.lazyErrorDescriptions, 0, lazyErrorDescriptions.length);
 		
 		return copy;
 	}
@@ -187,6 +284,32 @@ public class ProjectSetEntry implements IAdaptable {
 	 */
 	protected void updateState() {
 		IProject loadedProject = getProjectInWorkspace();
+		if (updateStateWithoutReference(loadedProject)) {
+			IProject[] projects = new IProject[1];
+			projects[0] = loadedProject;
+			String loadedReferences[] = null;
+			try {
+				loadedReferences = ProjectSetPlugin.getDefault().getProjectReferenceCache().getReferences(projects, getProvider(), projectSet.getProjectSetFilename());
+			} catch (TeamException e) {
+			}
+			
+			if (loadedReferences ==  null) {
+				updateState(null);
+			} else {
+				updateState(loadedReferences[0]);
+			}
+		}
+	}
+
+	/** 
+	 * Updates the state of the project if it does not depend on the
+	 * reference of the loaded project.
+	 * 
+	 * Returns true if the project is loaded and shared by the provider of
+	 * this entry, then the state must be updated by updateState(String)
+	 * with the reference of the loaded project.
+	 */
+	protected boolean updateStateWithoutReference(IProject loadedProject) {
 		if (loadedProject == null) {
 			state = STATE_NOT_LOADED;
 		} else {		
@@ -197,28 +320,28 @@ public class ProjectSetEntry implements IAdaptable {
 				if (!providerOfLoadedProject.getID().equals(getProvider())) {
 					state = STATE_LOADED_DIFFERENT;
 				} else {
-					IProjectReferenceAnalyser prAnalyser = ProjectSetUtil.getProjectReferenceAnalyser(providerOfLoadedProject.getID());
-					IProject[] projects = new IProject[1];
-					projects[0] = loadedProject;
-					String loadedReferences[] = null;
-					try {
-						loadedReferences = prAnalyser.asReference(projects, new ProjectSetContext(), new NullProgressMonitor(), projectSet.getProjectSetFilename());
-					} catch (TeamException e) {
-					}
-					
-					if (loadedReferences ==  null) {
-						// ?? 
-						state = STATE_LOADED_NOT_SHARED;
-					} else {
-						if (prAnalyser.areEqual(getProjectReference(), loadedReferences[0])) {
-							state = STATE_LOADED;
-						} else { 
-							state = STATE_LOADED_DIFFERENT;
-						}
-					}
+					return true;
 				}
 			}
 		}
+		return false;
+	}
+
+	/** 
+	 * Updates the state of the loaded and shared project from the reference
+	 * of the loaded project (null if the reference could not be retrieved)
+	 */
+	protected void updateState(String loadedReference) {
+		if (loadedReference == null) {
+			// ?? 
+			state = STATE_LOADED_NOT_SHARED;
+		} else {
+			if (getParsedReference().getProjectReferenceAnalyser().areEqual(getProjectReference(), loadedReference)) {
+				state = STATE_LOADED;
+			} else { 
+				state = STATE_LOADED_DIFFERENT;
+			}
+		}
 	}
 	
 	/** 
@@ -227,7 +350,47 @@ public class ProjectSetEntry implements IAdaptable {
 	 * pre: state must be up to date 
 	 */
 	protected void updateSubProjectSet(Set<IFile> updatedProjectSetFiles) {
+		updateSubProjectSet(updatedProjectSetFiles, false);
+	}
+
+	/** 
+	 * Updates the sub project set recursively. If lazy is true, the sub project set
+	 * is updated (also lazily) when it is requested the first time by getSubProjectSet.
+	 * updatedProjectSetFiles is kept until then and shared with the other entries of the update.
+	 * 
+	 * pre: state must be up to date 
+	 */
+	protected void updateSubProjectSet(Set<IFile> updatedProjectSetFiles, boolean lazy) {
+		updateSubProjectSet(updatedProjectSetFiles, lazy, new NullProgressMonitor());
+	}
+
+	/** 
+	 * Updates the sub project set recursively like updateSubProjectSet(Set, boolean).
+	 * Throws an OperationCanceledException if the monitor is canceled.
+	 */
+	protected void updateSubProjectSet(Set<IFile> updatedProjectSetFiles, boolean lazy, IProgressMonitor monitor) {
 		subProjectSet = null;
+		pendingUpdatedProjectSetFiles = null;
+		if (state != STATE_LOADED) {
+			return;
+		}
+		if (lazy) {
+			pendingUpdatedProjectSetFiles = updatedProjectSetFiles;
+			return;
+		}
+		expandSubProjectSet(updatedProjectSetFiles, false, monitor);
+	}
+
+	/**
+	 * Gets the project set of the loaded project set project
+	 * and updates it as sub project set.
+	 * The sub project set of an entry of a detached project set is a new
+	 * detached project set (see ProjectSet.createDetached).
+	 */
+	private void expandSubProjectSet(Set<IFile> updatedProjectSetFiles, boolean lazy, IProgressMonitor monitor) {
+		if (monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
 		if (state == STATE_LOADED) {
 			// check a project set project
 			IProject project = getProjectInWorkspace();
@@ -247,10 +410,15 @@ public class ProjectSetEntry implements IAdaptable {
 				if ((psFile != null) && 
 					(psFile.isAccessible()) &&
 					(!updatedProjectSetFiles.contains(psFile))) {
-					//subProjectSet = new ProjectSet(psFile, false);
-					subProjectSet = psNature.getProjectSet();
-					subProjectSet.setParentProjectSetEntry(this);				
-					subProjectSet.update(updatedProjectSetFiles);
+					if ((projectSet != null) && projectSet.isDetached()) {
+						subProjectSet = ProjectSet.createDetached(psFile);
+					} else {
+						subProjectSet = psNature.getProjectSet(false);
+					}
+					if (subProjectSet != null) {
+						subProjectSet.setParentProjectSetEntry(this);				
+						subProjectSet.update(updatedProjectSetFiles, lazy, monitor);
+					}
 				}
 			}
 		}
@@ -296,6 +464,8 @@ public class ProjectSetEntry implements IAdaptable {
 	public void setDataFrom(ProjectSetEntry sourceEntry) {
 		provider = sourceEntry.getProvider();
 		projectReference = sourceEntry.getProjectReference();		
+		parsedReference = sourceEntry.parsedReference;
+		fireProjectSetEntryChanged();
 	}
 		
 	/**
@@ -317,6 +487,8 @@ public class ProjectSetEntry implements IAdaptable {
 	 */	
 	public void setProvider(String provider) {
 		this.provider = provider;
+		parsedReference = null;
+		fireProjectSetEntryChanged();
 	}
 
 	/**
@@ -331,34 +503,47 @@ public class ProjectSetEntry implements IAdaptable {
 	 */	
 	public void setProjectReference(String projectReference) {
 		this.projectReference = projectReference;
+		parsedReference = null;
+		fireProjectSetEntryChanged();
 	}
 
 	/**
 	 * Returns the project name retrieved from the project reference
 	 */			
 	public String getProjectName() {
-		return getProjectReferenceAnalyser().getProjectName(projectReference);
+		return getParsedReference().getProjectName();
 	}
 
 	/**
 	 * Returns the server location retrieved from the project reference
 	 */	
 	public String getLocation() {
-		return getProjectReferenceAnalyser().getLocation(projectReference);
+		return getParsedReference().getLocation();
 	}
 
 	/**
 	 * Returns the tag retrieved from the project reference
 	 */		
 	public String getTag() {
-		return getProjectReferenceAnalyser().getTag(projectReference);
+		return getParsedReference().getTag();
+	}
+
+	/**
+	 * Returns the parsed project reference, the parts of the
+	 * reference are only retrieved once by the analyser
+	 */
+	public ParsedProjectReference getParsedReference() {
+		if (parsedReference == null) {
+			parsedReference = new ParsedProjectReference(provider, projectReference);
+		}
+		return parsedReference;
 	}
 
 	/**
 	 * Returns the project reference analyser for the provider
 	 */
 	private IProjectReferenceAnalyser getProjectReferenceAnalyser() {
-		return ProjectSetUtil.getProjectReferenceAnalyser(provider);
+		return getParsedReference().getProjectReferenceAnalyser();
 	}
 	
 	/**
@@ -380,11 +565,47 @@ public class ProjectSetEntry implements IAdaptable {
 	/** 
 	 * Returns a string representing the position of
 	 * this entry in the project set tree
+	 * (cached until the project name or the path to the root changes)
 	 */
 	public String getTreePositionString() {
+		TreePosition position = getTreePosition(0);
+		if (position != null) {
+			return position.positionString;
+		}
 		return getTreePositionString(new HashSet<File>());
 	}
 
+	/**
+	 * Returns the cached position if the project set, its file and the positions
+	 * of the parent entries are unchanged, otherwise computes a new position from
+	 * the position of the parent entry.
+	 * Returns null if the entry is not part of a project set, a project set file is
+	 * repeated on the path to the root or the tree is too deep, the position string
+	 * is not cached then.
+	 */
+	private TreePosition getTreePosition(int depth) {
+		ProjectSet ps = getProjectSet();
+		if ((ps == null) || (depth > MAX_CACHED_TREE_DEPTH)) {
+			return null;
+		}
+		File file = ps.getProjectSetFile().getFullPath().toFile();
+		ProjectSetEntry parentEntry = ps.getParentProjectSetEntry();
+		TreePosition parentPosition = null;
+		if (parentEntry != null) {
+			parentPosition = parentEntry.getTreePosition(depth + 1);
+			if ((parentPosition == null) || parentPosition.containsProjectSetFile(file)) {
+				return null;
+			}
+		}
+		TreePosition position = treePosition;
+		if ((position == null) || !position.isValid(ps, file, parentEntry, parentPosition)) {
+			String positionString = (parentPosition == null) ? getProjectName() : parentPosition.positionString+"/"+getProjectName(); //$NON-NLS-1$
+			position = new TreePosition(positionString, ps, file, parentEntry, parentPosition);
+			treePosition = position;
+		}
+		return position;
+	}
+
 	/** 
 	 * Returns a string representing the position of
 	 * this entry in the project set tree
@@ -412,6 +633,11 @@ public class ProjectSetEntry implements IAdaptable {
 	 * @return ProjectSet
 	 */
 	public ProjectSet getSubProjectSet() {
+		Set<IFile> updatedProjectSetFiles = pendingUpdatedProjectSetFiles;
+		if (updatedProjectSetFiles != null) {
+			pendingUpdatedProjectSetFiles = null;
+			expandSubProjectSet(updatedProjectSetFiles, true, new NullProgressMonitor());
+		}
 		return subProjectSet;
 	}
 
@@ -448,6 +674,9 @@ public class ProjectSetEntry implements IAdaptable {
 	 *      before this method
 	 */
 	public String getErrorDescription(int errorType) {
+		if (lazyErrorDescriptions[errorType] != null) {
+			return lazyErrorDescriptions[errorType].toString();
+		}
 		return errorDescriptions[errorType];
 	}
 
@@ -465,6 +694,23 @@ public class ProjectSetEntry implements IAdaptable {
 	 */
 	public void setErrorDescription(int errorType, String errorDescription) {
 		this.errorDescriptions[errorType] = errorDescription;
+		this.lazyErrorDescriptions[errorType] = null;
+	}
+
+	/**
+	 * Sets the errorDescription, the text of the description is created on first use
+	 */
+	void setErrorDescription(int errorType, ProjectSetErrorDescription errorDescription) {
+		this.errorDescriptions[errorType] = ""; //$NON-NLS-1$
+		this.lazyErrorDescriptions[errorType] = errorDescription;
+	}
+
+	/**
+	 * Returns the errorDescription set by updateErrors or null if
+	 * the description was set as text
+	 */
+	ProjectSetErrorDescription getLazyErrorDescription(int errorType) {
+		return lazyErrorDescriptions[errorType];
 	}
 
 	/**
@@ -519,6 +765,7 @@ public class ProjectSetEntry implements IAdaptable {
 		for (int i = 0; i < NUMBER_OF_ERROR_TYPES; i++) {
 			errorStates[i] = ERROR_STATE_OK;
 			errorDescriptions[i] = ""; //$NON-NLS-1$
+			lazyErrorDescriptions[i] = null;
 		}
 	}
 
@@ -610,8 +857,49 @@ public class ProjectSetEntry implements IAdaptable {
 		return getResolvedPreferredLocation(null);
 	}
 		
+	/**
+	 * Returns the resolved preferred location (see PreferredLocationsUtil.resolve).
+	 * The location is cached if cachedPathVariableMap is null or the map of the
+	 * current path variable snapshot, until the unresolved location, the path
+	 * variables or the project reference (project name and tag) change.
+	 */
 	public String getResolvedPreferredLocation(Map<String, String> cachedPathVariableMap) {
-		return PreferredLocationsUtil.resolve(getUnresolvedPreferredLocation(), cachedPathVariableMap, this);
+		PathVariableSnapshot snapshot = PreferredLocationsUtil.getPathVariableSnapshot();
+		if ((cachedPathVariableMap != null) && (cachedPathVariableMap != snapshot.getPathVariableMap())) {
+			return PreferredLocationsUtil.resolve(getUnresolvedPreferredLocation(), cachedPathVariableMap, this);
+		}
+		return getResolvedLocation(snapshot).resolvedLocation;
+	}
+
+	public PathKey getResolvedPreferredLocationKey() {
+		return getResolvedPreferredLocationKey(null);
+	}
+
+	/**
+	 * Returns the comparison key of the resolved preferred location
+	 * (see getResolvedPreferredLocation), null if a path variable is undefined
+	 */
+	public PathKey getResolvedPreferredLocationKey(Map<String, String> cachedPathVariableMap) {
+		PathVariableSnapshot snapshot = PreferredLocationsUtil.getPathVariableSnapshot();
+		if ((cachedPathVariableMap != null) && (cachedPathVariableMap != snapshot.getPathVariableMap())) {
+			return PathKey.valueOf(PreferredLocationsUtil.resolve(getUnresolvedPreferredLocation(), cachedPathVariableMap, this));
+		}
+		return getResolvedLocation(snapshot).pathKey;
+	}
+
+	private ResolvedLocation getResolvedLocation(PathVariableSnapshot snapshot) {
+		String unresolvedLocation = getUnresolvedPreferredLocation();
+		ParsedProjectReference currentParsedReference = getParsedReference();
+		ResolvedLocation currentResolvedLocation = resolvedLocation;
+		if ((currentResolvedLocation == null) || !currentResolvedLocation.isValid(unresolvedLocation, snapshot.getVersion(), currentParsedReference)) {
+			currentResolvedLocation = new ResolvedLocation(
+				unresolvedLocation,
+				snapshot.getVersion(),
+				currentParsedReference,
+				PreferredLocationsUtil.resolve(unresolvedLocation, snapshot.getPathVariableMap(), this));
+			resolvedLocation = currentResolvedLocation;
+		}
+		return currentResolvedLocation;
 	}
 
 }
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The description of an error of a project set entry, as set by ProjectSet.updateErrors.
+ *
+ * Only the parts of the description are kept (the error text, the conflicting entries
+ * and the entries of the sub project set with errors of the same type, with their
+ * descriptions), the text with the tree positions of the entries is built when it
+ * is requested the first time.
+ */
+class ProjectSetErrorDescription {
+
+	private final String errorText; // null if the error is only in sub project sets
+	private final ProjectSetEntry entry;
+
+	// conflicting entries, null if the conflicts are given by a group
+	private final Collection<ProjectSetEntry> conflictEntries;
+
+	// entries of a group, entries conflict with all entries of the group with another key
+	private final List<ProjectSetEntry> groupEntries;
+	private final Map<ProjectSetEntry, Object> groupKeys;
+
+	private String subErrorText;
+	private String andErrorText;
+	// entries of the sub project set with errors of the same type and their descriptions
+	private List<ProjectSetEntry> subEntries = new ArrayList<ProjectSetEntry>();
+	private List<ProjectSetErrorDescription> subDescriptions = new ArrayList<ProjectSetErrorDescription>();
+
+	private String description; // created on first use
+
+	/**
+	 * Creates the description of an error without conflicting entries
+	 * (or an error only in sub project sets if errorText is null)
+	 */
+	public ProjectSetErrorDescription(String errorText) {
+		this(errorText, null, null, null, null);
+	}
+
+	/**
+	 * Creates the description of a conflict with the conflicting entries
+	 */
+	public ProjectSetErrorDescription(String errorText, Collection<ProjectSetEntry> conflictEntries) {
+		this(errorText, null, conflictEntries, null, null);
+	}
+
+	/**
+	 * Creates the description of a conflict of the entry with all entries of the group
+	 * that have another key than the entry
+	 */
+	public ProjectSetErrorDescription(String errorText, ProjectSetEntry entry, List<ProjectSetEntry> groupEntries, Map<ProjectSetEntry, Object> groupKeys) {
+		this(errorText, entry, null, groupEntries, groupKeys);
+	}
+
+	private ProjectSetErrorDescription(String errorText, ProjectSetEntry entry, Collection<ProjectSetEntry> conflictEntries, List<ProjectSetEntry> groupEntries, Map<ProjectSetEntry, Object> groupKeys) {
+		super();
+		this.errorText = errorText;
+		this.entry = entry;
+		this.conflictEntries = conflictEntries;
+		this.groupEntries = groupEntries;
+		this.groupKeys = groupKeys;
+	}
+
+	/**
+	 * Returns true if the entry itself has the error (not only in sub project sets)
+	 */
+	public boolean hasError() {
+		return errorText != null;
+	}
+
+	/**
+	 * Adds an entry of the sub project set with an error of the same type
+	 * (the error of the sub entry itself or in its sub project set)
+	 */
+	public void addSubEntry(ProjectSetEntry subEntry, ProjectSetErrorDescription subDescription, String subErrorText, String andErrorText) {
+		this.subErrorText = subErrorText;
+		this.andErrorText = andErrorText;
+		subEntries.add(subEntry);
+		subDescriptions.add(subDescription);
+		description = null;
+	}
+
+	/**
+	 * Adds the entries of the sub project sets (recursively) that have the error
+	 */
+	private void collectSubEntriesWithError(List<ProjectSetEntry> entries) {
+		for (int i = 0; i < subEntries.size(); i++) {
+			ProjectSetErrorDescription subDescription = subDescriptions.get(i);
+			if (subDescription.hasError()) {
+				entries.add(subEntries.get(i));
+			}
+			subDescription.collectSubEntriesWithError(entries);
+		}
+	}
+
+	/**
+	 * Returns the conflicting entries
+	 */
+	public List<ProjectSetEntry> getConflictEntries() {
+		List<ProjectSetEntry> entries = new ArrayList<ProjectSetEntry>();
+		if (conflictEntries != null) {
+			entries.addAll(conflictEntries);
+		} else if (groupEntries != null) {
+			Object key = groupKeys.get(entry);
+			Iterator<ProjectSetEntry> entryIterator = groupEntries.iterator();
+			while (entryIterator.hasNext()) {
+				ProjectSetEntry groupEntry = entryIterator.next();
+				if ((groupEntry != entry) && !key.equals(groupKeys.get(groupEntry))) {
+					entries.add(groupEntry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	public String toString() {
+		if (description == null) {
+			StringBuffer descriptionBuffer = new StringBuffer();
+			if (errorText != null) {
+				descriptionBuffer.append(errorText);
+				if ((conflictEntries != null) || (groupEntries != null)) {
+					descriptionBuffer.append(" "); //$NON-NLS-1$
+					Iterator<ProjectSetEntry> conflictEntryIterator = getConflictEntries().iterator();
+					while (conflictEntryIterator.hasNext()) {
+						descriptionBuffer.append(conflictEntryIterator.next().getTreePositionString());
+						if (conflictEntryIterator.hasNext()) {
+							descriptionBuffer.append(", "); //$NON-NLS-1$
+						}
+					}
+				}
+			}
+			List<ProjectSetEntry> subEntriesWithError = new ArrayList<ProjectSetEntry>();
+			collectSubEntriesWithError(subEntriesWithError);
+			Iterator<ProjectSetEntry> subEntryIterator = subEntriesWithError.iterator();
+			boolean first = true;
+			while (subEntryIterator.hasNext()) {
+				if (!first) {
+					descriptionBuffer.append(", "); //$NON-NLS-1$
+				} else if (errorText == null) {
+					descriptionBuffer.append(subErrorText);
+					descriptionBuffer.append(" "); //$NON-NLS-1$
+				} else {
+					descriptionBuffer.append(" "); //$NON-NLS-1$
+					descriptionBuffer.append(andErrorText);
+					descriptionBuffer.append(" "); //$NON-NLS-1$
+				}
+				descriptionBuffer.append(subEntryIterator.next().getTreePositionString());
+				first = false;
+			}
+			description = descriptionBuffer.toString();
+		}
+		return description;
+	}
+}
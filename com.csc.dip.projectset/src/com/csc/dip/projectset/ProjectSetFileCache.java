@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * Caches the parsed content of project set files and their ppl files, so
+ * a project set file is only parsed again if it or its ppl file was modified.
+ *
+ * A snapshot is valid while the modification stamps of both files and the size
+ * and the time stamp of the local files are unchanged.
+ * The cache holds at most MAX_SIZE snapshots, the least recently used
+ * snapshot is removed first.
+ *
+ * The snapshots can be persisted (see ProjectSetFileStore), after a restart
+ * a restored snapshot is used instead of parsing the files again if the size,
+ * the time stamp and the content hash of the files are unchanged.
+ */
+public class ProjectSetFileCache {
+
+	/**
+	 * The maximum number of cached project set files
+	 */
+	public static final int MAX_SIZE = 256;
+
+	// key = project set file, value = snapshot (least recently used first)
+	private Map<IFile, ProjectSetFileSnapshot> snapshots = new LinkedHashMap<IFile, ProjectSetFileSnapshot>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<IFile, ProjectSetFileSnapshot> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	// key = project set file, value = snapshot read by restore and not used yet
+	private Map<IFile, ProjectSetFileSnapshot> persistedSnapshots = new HashMap<IFile, ProjectSetFileSnapshot>();
+
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Returns the up to date snapshot of the project set file,
+	 * the file is read if it is not cached
+	 */
+	ProjectSetFileSnapshot getSnapshot(IFile psfFile) {
+		ProjectSetFileSnapshot snapshot;
+		ProjectSetFileSnapshot persistedSnapshot;
+		synchronized (this) {
+			snapshot = snapshots.get(psfFile);
+			persistedSnapshot = persistedSnapshots.remove(psfFile);
+		}
+		if ((snapshot != null) && snapshot.isUpToDate()) {
+			hitCount.incrementAndGet();
+			return snapshot;
+		}
+		missCount.incrementAndGet();
+		// read outside of the lock
+		snapshot = ProjectSetFileSnapshot.load(psfFile, persistedSnapshot);
+		synchronized (this) {
+			if (snapshot.isCacheable()) {
+				snapshots.put(psfFile, snapshot);
+			} else {
+				snapshots.remove(psfFile);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Removes the snapshot of the project set file
+	 */
+	public synchronized void invalidate(IFile projectSetFile) {
+		snapshots.remove(projectSetFile);
+		persistedSnapshots.remove(projectSetFile);
+	}
+
+	/**
+	 * Removes all snapshots
+	 */
+	public synchronized void clear() {
+		snapshots.clear();
+		persistedSnapshots.clear();
+	}
+
+	/**
+	 * Reads the persisted snapshots from the file,
+	 * a file that cannot be read is ignored
+	 */
+	public void restore(File storeFile) {
+		List<ProjectSetFileSnapshot> restoredSnapshots;
+		try {
+			restoredSnapshots = ProjectSetFileStore.read(storeFile);
+		} catch (IOException e) {
+			return;
+		} catch (RuntimeException e) {
+			// invalid content
+			return;
+		}
+		synchronized (this) {
+			Iterator<ProjectSetFileSnapshot> snapshotIterator = restoredSnapshots.iterator();
+			while (snapshotIterator.hasNext()) {
+				ProjectSetFileSnapshot snapshot = snapshotIterator.next();
+				persistedSnapshots.put(snapshot.getProjectSetFile(), snapshot);
+			}
+		}
+	}
+
+	/**
+	 * Writes the snapshots of existing files to the file: the up to date cached
+	 * snapshots and the restored snapshots that were not used.
+	 * The content hashes of the cached snapshots are computed here (outside of the lock).
+	 */
+	public void persist(File storeFile) throws IOException {
+		List<ProjectSetFileSnapshot> cachedSnapshots = new ArrayList<ProjectSetFileSnapshot>();
+		List<ProjectSetFileSnapshot> unusedSnapshots = new ArrayList<ProjectSetFileSnapshot>();
+		synchronized (this) {
+			Iterator<ProjectSetFileSnapshot> snapshotIterator = snapshots.values().iterator();
+			while (snapshotIterator.hasNext()) {
+				ProjectSetFileSnapshot snapshot = snapshotIterator.next();
+				if (snapshot.isPersistable() && snapshot.isUpToDate()) {
+					cachedSnapshots.add(snapshot);
+				}
+			}
+			snapshotIterator = persistedSnapshots.values().iterator();
+			while (snapshotIterator.hasNext()) {
+				ProjectSetFileSnapshot snapshot = snapshotIterator.next();
+				if (!snapshots.containsKey(snapshot.getProjectSetFile())) {
+					unusedSnapshots.add(snapshot);
+				}
+			}
+		}
+		List<ProjectSetFileSnapshot> persistableSnapshots = new ArrayList<ProjectSetFileSnapshot>();
+		Iterator<ProjectSetFileSnapshot> snapshotIterator = cachedSnapshots.iterator();
+		while (snapshotIterator.hasNext()) {
+			ProjectSetFileSnapshot snapshot = snapshotIterator.next().getPersistableSnapshot();
+			if (snapshot != null) {
+				persistableSnapshots.add(snapshot);
+			}
+		}
+		snapshotIterator = unusedSnapshots.iterator();
+		while (snapshotIterator.hasNext() && (persistableSnapshots.size() < MAX_SIZE)) {
+			ProjectSetFileSnapshot snapshot = snapshotIterator.next();
+			if (snapshot.getProjectSetFile().exists()) {
+				persistableSnapshots.add(snapshot);
+			}
+		}
+		ProjectSetFileStore.write(storeFile, persistableSnapshots);
+	}
+
+	/**
+	 * Returns the number of cached project set files
+	 */
+	public synchronized int size() {
+		return snapshots.size();
+	}
+
+	/**
+	 * Returns the number of project set files that were found in the cache
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of project set files that were read
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Sets the hit and miss count to 0
+	 */
+	public void resetCounters() {
+		hitCount.set(0);
+		missCount.set(0);
+	}
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.core.resources.IFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the project references of a project set file.
+ *
+ * The file is read without any project set, so the result only depends on
+ * the file and can be shared (see ProjectSetFileSnapshot).
+ */
+class ProjectSetFileReader {
+
+	/**
+	 * The content of a project set file
+	 */
+	public static class Result {
+
+		// key = provider, value = reference strings (null if the file could not be loaded)
+		private final Map<String, List<String>> referenceMap;
+		private final boolean corrupted;
+
+		public Result(Map<String, List<String>> referenceMap, boolean corrupted) {
+			super();
+			this.referenceMap = referenceMap;
+			this.corrupted = corrupted;
+		}
+
+		/**
+		 * Returns the map where key is the provider name and value is a list of
+		 * project reference strings, null if the file could not be loaded
+		 */
+		public Map<String, List<String>> getReferenceMap() {
+			return referenceMap;
+		}
+
+		/**
+		 * Returns true if the file is no valid project set file
+		 */
+		public boolean isCorrupted() {
+			return corrupted;
+		}
+	}
+
+	private ProjectSetFileReader() {
+		super();
+	}
+
+	/**
+	 * Loads a project set file, the map of the result is null if the file
+	 * does not exist or cannot be read
+	 */
+	public static Result read(IFile projectSetFile) {
+		if(!(projectSetFile.getFullPath().toFile().exists() && projectSetFile.getFullPath().toFile().canRead()) && !(projectSetFile.exists() && projectSetFile.isAccessible())){
+			return new Result(null, false);
+		}
+		File psFile;
+		if(projectSetFile.getLocation() == null) {
+			psFile = projectSetFile.getFullPath().toFile();
+		}else {
+			psFile = projectSetFile.getLocation().toFile();
+		}
+
+		Map<String, List<String>> map;
+		try {
+			map = readStreaming(psFile);
+		} catch (XMLStreamException | IOException | FactoryConfigurationError e) {
+			// streaming reader not available or failed, use DOM reader
+			return readDocument(psFile);
+		}
+		// error if null: root element must be psf
+		return new Result(map, map == null);
+	}
+
+	/**
+	 * Reads a project set file in one pass with a streaming reader and return
+	 * a map where key is the provider name and value is a list of project
+	 * reference strings. Returns null if the root element is not a psf element.
+	 *
+	 * The result is the same as for readDocument, but no document is built in memory.
+	 */
+	public static Map<String, List<String>> readStreaming(File psFile) throws XMLStreamException, IOException {
+		// map where key is the provider name and value is a list of project reference strings
+		Map<String, List<String>> map = new HashMap<String, List<String>>();
+
+		// one item for each open element: the reference list if the element is a provider, otherwise null
+		List<List<String>> openElements = new ArrayList<List<String>>();
+
+		InputStream inputStream = XMLUtil.openInputStream(psFile);
+		try {
+			XMLStreamReader reader = XMLUtil.createStreamReader(inputStream);
+			try {
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String elementName = reader.getLocalName();
+						List<String> referenceList = null;
+						if (openElements.isEmpty()) {
+							if (!elementName.equals(ProjectSet.XML_ELEM_PSF)) {
+								// error: root element must be psf
+								return null;
+							}
+							// version currently unused
+						} else if (elementName.equals(ProjectSet.XML_ELEM_PROVIDER)) {
+							String providerID = reader.getAttributeValue(null, ProjectSet.XML_ATTR_ID);
+							if (providerID == null) {
+								// error: attribute id required
+							} else {
+								referenceList = new ArrayList<String>();
+								map.put(providerID, referenceList);
+							}
+						} else if (elementName.equals(ProjectSet.XML_ELEM_PROJECT)) {
+							// only projects that are direct children of a provider
+							List<String> providerReferenceList = openElements.get(openElements.size() - 1);
+							if (providerReferenceList != null) {
+								String projectReference = reader.getAttributeValue(null, ProjectSet.XML_ATTR_REFERENCE);
+								if (projectReference == null) {
+									// error: attribute reference required
+								} else {
+									providerReferenceList.add(projectReference);
+								}
+							}
+						}
+						openElements.add(referenceList);
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						openElements.remove(openElements.size() - 1);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} finally {
+			inputStream.close();
+		}
+		return map;
+	}
+
+	/**
+	 * Reads a project set file as XML document
+	 */
+	public static Result readDocument(File psFile) {
+		// map where key is the provider name and value is a list of project reference strings
+		Map<String, List<String>> map = new HashMap<String, List<String>>();
+
+		Document document = null;
+
+		try {
+			document = XMLUtil.readDocument(psFile);
+		} catch (ParserConfigurationException e) {
+			return new Result(null, true);
+		} catch (SAXException e) {
+			return new Result(null, true);
+		} catch (IOException e) {
+			return new Result(null, true);
+		}
+
+		Element psfElement = document.getDocumentElement();
+		if (!psfElement.getNodeName().equals(ProjectSet.XML_ELEM_PSF)) {
+			// error: root element must be psf
+			return new Result(null, true);
+		}
+		// version currently unused
+		//String psfVersion = psfElement.getAttribute(XML_ATTR_VERSION);
+
+		NodeList providerNodes = psfElement.getElementsByTagName(ProjectSet.XML_ELEM_PROVIDER);
+		for (int i = 0; i < providerNodes.getLength(); i++) {
+			Node providerNode = providerNodes.item(i);
+			Node providerIDNode = providerNode.getAttributes().getNamedItem(ProjectSet.XML_ATTR_ID);
+			if (providerIDNode == null) {
+				// error: attribute id required
+			} else {
+				List<String> referenceList = new ArrayList<String>();
+				String providerID = providerIDNode.getNodeValue();
+				NodeList projectNodes = providerNode.getChildNodes();
+
+				for (int j = 0; j < projectNodes.getLength(); j++) {
+					Node projectNode = projectNodes.item(j);
+					if (projectNode.getNodeName().equals(ProjectSet.XML_ELEM_PROJECT)) {
+						Node projectReferenceNode = projectNode.getAttributes().getNamedItem(ProjectSet.XML_ATTR_REFERENCE);
+						if (projectReferenceNode == null) {
+							// error: attribute reference required
+						} else {
+							String projectReference = projectReferenceNode.getNodeValue();
+							referenceList.add(projectReference);
+						}
+					}
+				}
+				map.put(providerID, referenceList);
+			}
+		}
+
+		return new Result(map, false);
+	}
+}
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+
+/**
+ * The immutable parsed content of a project set file and its ppl file
+ * (see ProjectSetFileCache).
+ *
+ * The parsed project references are shared by the project sets created
+ * from the snapshot, an entry uses its own parsed reference when its
+ * provider or reference is changed.
+ *
+ * The signatures of the local files are kept to check if the files were
+ * changed and to persist the snapshot (see ProjectSetFileStore), the content
+ * hashes are only computed when they are needed (see FileSignature).
+ * A restored snapshot keeps the reference strings, they are only parsed
+ * when load uses the snapshot (parsing a reference may activate the
+ * bundle of the project reference analyser of the provider).
+ */
+class ProjectSetFileSnapshot {
+
+	private final IFile projectSetFile;
+	private final long projectSetFileStamp; // modification stamp of the psf file when it was read
+	private final long pplFileStamp; // modification stamp of the ppl file when it was read
+	private final FileSignature projectSetFileSignature; // null if the psf file is no local file
+	private final FileSignature pplFileSignature; // null if the ppl file does not exist
+
+	// key = provider, value = parsed references (null if the file could not be loaded or for a restored snapshot)
+	private final Map<String, List<ParsedProjectReference>> referenceMap;
+
+	// key = provider, value = reference strings of a restored snapshot (null if the file could not be loaded or not restored)
+	private final Map<String, List<String>> restoredReferenceMap;
+	private final boolean corrupted;
+
+	// key = project name, value = (unresolved) preferred location (null if there is no ppl file)
+	private final Map<String, String> preferredLocationMap;
+
+	private ProjectSetFileSnapshot(IFile projectSetFile, long projectSetFileStamp, long pplFileStamp, FileSignature projectSetFileSignature, FileSignature pplFileSignature, Map<String, List<String>> loadedReferenceMap, boolean corrupted, Map<String, String> preferredLocationMap, boolean restored) {
+		super();
+		this.projectSetFile = projectSetFile;
+		this.projectSetFileStamp = projectSetFileStamp;
+		this.pplFileStamp = pplFileStamp;
+		this.projectSetFileSignature = projectSetFileSignature;
+		this.pplFileSignature = pplFileSignature;
+		this.corrupted = corrupted;
+		if (restored) {
+			this.referenceMap = null;
+			this.restoredReferenceMap = loadedReferenceMap;
+		} else {
+			this.referenceMap = parse(loadedReferenceMap);
+			this.restoredReferenceMap = null;
+		}
+		this.preferredLocationMap = (preferredLocationMap == null) ? null : Collections.unmodifiableMap(new HashMap<String, String>(preferredLocationMap));
+	}
+
+	private ProjectSetFileSnapshot(ProjectSetFileSnapshot snapshot, long projectSetFileStamp, long pplFileStamp, FileSignature projectSetFileSignature, FileSignature pplFileSignature) {
+		super();
+		this.projectSetFile = snapshot.projectSetFile;
+		this.projectSetFileStamp = projectSetFileStamp;
+		this.pplFileStamp = pplFileStamp;
+		this.projectSetFileSignature = projectSetFileSignature;
+		this.pplFileSignature = pplFileSignature;
+		// the references of a restored snapshot are parsed when it is used
+		this.referenceMap = (snapshot.restoredReferenceMap == null) ? snapshot.referenceMap : parse(snapshot.restoredReferenceMap);
+		this.restoredReferenceMap = null;
+		this.corrupted = snapshot.corrupted;
+		this.preferredLocationMap = snapshot.preferredLocationMap;
+	}
+
+	/**
+	 * Returns the (unmodifiable) map of parsed references in the order of the loaded map,
+	 * null if the loaded map is null
+	 */
+	private static Map<String, List<ParsedProjectReference>> parse(Map<String, List<String>> loadedReferenceMap) {
+		if (loadedReferenceMap == null) {
+			return null;
+		}
+		Map<String, List<ParsedProjectReference>> parsedReferenceMap = new LinkedHashMap<String, List<ParsedProjectReference>>();
+		Iterator<Map.Entry<String, List<String>>> mapEntryIterator = loadedReferenceMap.entrySet().iterator();
+		while (mapEntryIterator.hasNext()) {
+			Map.Entry<String, List<String>> mapEntry = mapEntryIterator.next();
+			List<ParsedProjectReference> parsedReferences = new ArrayList<ParsedProjectReference>(mapEntry.getValue().size());
+			Iterator<String> referenceIterator = mapEntry.getValue().iterator();
+			while (referenceIterator.hasNext()) {
+				parsedReferences.add(new ParsedProjectReference(mapEntry.getKey(), referenceIterator.next()));
+			}
+			parsedReferenceMap.put(mapEntry.getKey(), Collections.unmodifiableList(parsedReferences));
+		}
+		return Collections.unmodifiableMap(parsedReferenceMap);
+	}
+
+	/**
+	 * Reads the project set file and its ppl file
+	 */
+	public static ProjectSetFileSnapshot load(IFile psfFile) {
+		return load(psfFile, null);
+	}
+
+	/**
+	 * Reads the project set file and its ppl file.
+	 * The content of the persisted snapshot is used instead if the signatures
+	 * of both files are unchanged.
+	 */
+	public static ProjectSetFileSnapshot load(IFile psfFile, ProjectSetFileSnapshot persistedSnapshot) {
+		IFile pplFile = PreferredLocationsUtil.getCorrespondingPplFile(psfFile);
+		// stamps and signatures before reading, so a change while reading is detected
+		long psfStamp = psfFile.getModificationStamp();
+		long pplStamp = pplFile.getModificationStamp();
+		FileSignature psfSignature;
+		FileSignature pplSignature;
+		if (persistedSnapshot == null) {
+			psfSignature = FileSignature.sizeAndTimeStampOf(getLocalFile(psfFile));
+			pplSignature = FileSignature.sizeAndTimeStampOf(getLocalFile(pplFile));
+		} else {
+			// the content hashes are compared with the persisted snapshot
+			psfSignature = FileSignature.of(getLocalFile(psfFile));
+			pplSignature = FileSignature.of(getLocalFile(pplFile));
+			if ((psfSignature != null) &&
+				psfSignature.equals(persistedSnapshot.projectSetFileSignature) &&
+				((pplSignature == null) ? (persistedSnapshot.pplFileSignature == null) : pplSignature.equals(persistedSnapshot.pplFileSignature))) {
+				return new ProjectSetFileSnapshot(persistedSnapshot, psfStamp, pplStamp, psfSignature, pplSignature);
+			}
+		}
+		ProjectSetFileReader.Result result = ProjectSetFileReader.read(psfFile);
+		return new ProjectSetFileSnapshot(
+			psfFile,
+			psfStamp,
+			pplStamp,
+			psfSignature,
+			pplSignature,
+			result.getReferenceMap(),
+			result.isCorrupted(),
+			PreferredLocationsUtil.loadMap(pplFile),
+			false);
+	}
+
+	/**
+	 * Creates a snapshot read by ProjectSetFileStore, it is only used
+	 * by load if the signatures of the files are unchanged.
+	 * The references are not parsed before load uses the snapshot.
+	 */
+	public static ProjectSetFileSnapshot restore(IFile projectSetFile, FileSignature projectSetFileSignature, FileSignature pplFileSignature, Map<String, List<String>> referenceMap, boolean corrupted, Map<String, String> preferredLocationMap) {
+		return new ProjectSetFileSnapshot(
+			projectSetFile,
+			IResource.NULL_STAMP,
+			IResource.NULL_STAMP,
+			projectSetFileSignature,
+			pplFileSignature,
+			referenceMap,
+			corrupted,
+			preferredLocationMap,
+			true);
+	}
+
+	/**
+	 * Returns true if the snapshot can be cached, the psf file is a file in the workspace
+	 */
+	public boolean isCacheable() {
+		return projectSetFileStamp != IResource.NULL_STAMP;
+	}
+
+	/**
+	 * Returns true if the psf and the ppl file have not been modified since they were read.
+	 * The modification stamps only change when the workspace is refreshed, so the size and
+	 * the time stamp of the local files are compared too (the files are read from the file
+	 * system, e.g. a psf file changed by a pull is read again without a refresh).
+	 */
+	public boolean isUpToDate() {
+		IFile pplFile = PreferredLocationsUtil.getCorrespondingPplFile(projectSetFile);
+		return (projectSetFile.getModificationStamp() == projectSetFileStamp) &&
+			(pplFile.getModificationStamp() == pplFileStamp) &&
+			isLocalFileUnchanged(projectSetFile, projectSetFileSignature) &&
+			isLocalFileUnchanged(pplFile, pplFileSignature);
+	}
+
+	private static boolean isLocalFileUnchanged(IFile file, FileSignature signature) {
+		File localFile = getLocalFile(file);
+		if (signature == null) {
+			return (localFile == null) || !localFile.isFile();
+		}
+		return signature.matchesSizeAndTimeStamp(localFile);
+	}
+
+	/**
+	 * Returns true if the snapshot can be persisted, the psf file is a local file
+	 */
+	public boolean isPersistable() {
+		return projectSetFileSignature != null;
+	}
+
+	/**
+	 * Returns the snapshot with the content hashes of the files, they are computed
+	 * if they are missing. Returns null if the snapshot cannot be persisted or a
+	 * file was changed since it was read.
+	 */
+	public ProjectSetFileSnapshot getPersistableSnapshot() {
+		if (!isPersistable()) {
+			return null;
+		}
+		FileSignature psfSignature = projectSetFileSignature.withHash(getLocalFile(projectSetFile));
+		if (psfSignature == null) {
+			return null;
+		}
+		File localPplFile = getLocalFile(PreferredLocationsUtil.getCorrespondingPplFile(projectSetFile));
+		FileSignature pplSignature = null;
+		if (pplFileSignature != null) {
+			pplSignature = pplFileSignature.withHash(localPplFile);
+			if (pplSignature == null) {
+				return null;
+			}
+		} else if ((localPplFile != null) && localPplFile.isFile()) {
+			return null;
+		}
+		if ((psfSignature == projectSetFileSignature) && (pplSignature == pplFileSignature)) {
+			return this;
+		}
+		return new ProjectSetFileSnapshot(this, projectSetFileStamp, pplFileStamp, psfSignature, pplSignature);
+	}
+
+	private static File getLocalFile(IFile file) {
+		return (file.getLocation() == null) ? null : file.getLocation().toFile();
+	}
+
+	public IFile getProjectSetFile() {
+		return projectSetFile;
+	}
+
+	public FileSignature getProjectSetFileSignature() {
+		return projectSetFileSignature;
+	}
+
+	public FileSignature getPplFileSignature() {
+		return pplFileSignature;
+	}
+
+	/**
+	 * Returns the (unmodifiable) map where key = provider and value = parsed references,
+	 * null if the project set file could not be loaded
+	 */
+	public Map<String, List<ParsedProjectReference>> getReferenceMap() {
+		return referenceMap;
+	}
+
+	/**
+	 * Returns the map where key = provider and value = project reference strings
+	 * (also of a restored snapshot), null if the project set file could not be loaded
+	 */
+	public Map<String, List<String>> getReferenceStringMap() {
+		if (referenceMap == null) {
+			return restoredReferenceMap;
+		}
+		Map<String, List<String>> referenceStringMap = new LinkedHashMap<String, List<String>>();
+		Iterator<Map.Entry<String, List<ParsedProjectReference>>> mapEntryIterator = referenceMap.entrySet().iterator();
+		while (mapEntryIterator.hasNext()) {
+			Map.Entry<String, List<ParsedProjectReference>> mapEntry = mapEntryIterator.next();
+			List<String> references = new ArrayList<String>(mapEntry.getValue().size());
+			Iterator<ParsedProjectReference> referenceIterator = mapEntry.getValue().iterator();
+			while (referenceIterator.hasNext()) {
+				references.add(referenceIterator.next().getProjectReference());
+			}
+			referenceStringMap.put(mapEntry.getKey(), references);
+		}
+		return referenceStringMap;
+	}
+
+	/**
+	 * Returns true if the project set file is corrupted
+	 */
+	public boolean isCorrupted() {
+		return corrupted;
+	}
+
+	/**
+	 * Returns the (unmodifiable) map where key = project name and value = (unresolved)
+	 * preferred location, null if the ppl file could not be loaded
+	 */
+	public Map<String, String> getPreferredLocationMap() {
+		return preferredLocationMap;
+	}
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Reads and writes the snapshots of the ProjectSetFileCache in a binary file
+ * (in the state location of the plugin), so the project set files don't have
+ * to be parsed again after a restart.
+ *
+ * A persisted snapshot is only used if the size, the time stamp and the content
+ * hash of the psf file and of the ppl file are unchanged (see ProjectSetFileSnapshot.load).
+ * A file that cannot be read (e.g. of an older format) is ignored.
+ */
+class ProjectSetFileStore {
+
+	/**
+	 * The name of the file in the state location of the plugin
+	 */
+	public static final String FILENAME = "projectSetFiles.bin"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x50534643; // "PSFC"
+	private static final int FORMAT_VERSION = 1;
+
+	// maximum length of a content hash (SHA-256 hashes have 32 bytes)
+	private static final int MAX_HASH_LENGTH = 64;
+
+	private ProjectSetFileStore() {
+		super();
+	}
+
+	/**
+	 * Writes the snapshots to the file
+	 */
+	public static void write(File storeFile, Collection<ProjectSetFileSnapshot> snapshots) throws IOException {
+		File tempFile = new File(storeFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(snapshots.size());
+			Iterator<ProjectSetFileSnapshot> snapshotIterator = snapshots.iterator();
+			while (snapshotIterator.hasNext()) {
+				writeSnapshot(output, snapshotIterator.next());
+			}
+		} finally {
+			output.close();
+		}
+		if (storeFile.exists() && !storeFile.delete()) {
+			throw new IOException(storeFile.getPath());
+		}
+		if (!tempFile.renameTo(storeFile)) {
+			throw new IOException(tempFile.getPath());
+		}
+	}
+
+	/**
+	 * Reads the snapshots from the file, returns an empty list if the file does not exist
+	 */
+	public static List<ProjectSetFileSnapshot> read(File storeFile) throws IOException {
+		List<ProjectSetFileSnapshot> snapshots = new ArrayList<ProjectSetFileSnapshot>();
+		if (!storeFile.isFile()) {
+			return snapshots;
+		}
+		// the lengths and counts are checked against the file size, so a corrupt file cannot allocate huge arrays
+		long maxLength = storeFile.length();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+		try {
+			if ((input.readInt() != MAGIC) || (input.readInt() != FORMAT_VERSION)) {
+				return snapshots;
+			}
+			int count = readCount(input, maxLength);
+			for (int i = 0; i < count; i++) {
+				snapshots.add(readSnapshot(input, maxLength));
+			}
+		} finally {
+			input.close();
+		}
+		return snapshots;
+	}
+
+	private static void writeSnapshot(DataOutputStream output, ProjectSetFileSnapshot snapshot) throws IOException {
+		writeString(output, snapshot.getProjectSetFile().getFullPath().toString());
+		writeSignature(output, snapshot.getProjectSetFileSignature());
+		writeSignature(output, snapshot.getPplFileSignature());
+		output.writeBoolean(snapshot.isCorrupted());
+
+		Map<String, List<String>> referenceMap = snapshot.getReferenceStringMap();
+		output.writeInt((referenceMap == null) ? -1 : referenceMap.size());
+		if (referenceMap != null) {
+			Iterator<Map.Entry<String, List<String>>> mapEntryIterator = referenceMap.entrySet().iterator();
+			while (mapEntryIterator.hasNext()) {
+				Map.Entry<String, List<String>> mapEntry = mapEntryIterator.next();
+				writeString(output, mapEntry.getKey());
+				output.writeInt(mapEntry.getValue().size());
+				Iterator<String> referenceIterator = mapEntry.getValue().iterator();
+				while (referenceIterator.hasNext()) {
+					writeString(output, referenceIterator.next());
+				}
+			}
+		}
+
+		Map<String, String> preferredLocationMap = snapshot.getPreferredLocationMap();
+		output.writeInt((preferredLocationMap == null) ? -1 : preferredLocationMap.size());
+		if (preferredLocationMap != null) {
+			Iterator<Map.Entry<String, String>> mapEntryIterator = preferredLocationMap.entrySet().iterator();
+			while (mapEntryIterator.hasNext()) {
+				Map.Entry<String, String> mapEntry = mapEntryIterator.next();
+				writeString(output, mapEntry.getKey());
+				writeString(output, mapEntry.getValue());
+			}
+		}
+	}
+
+	private static ProjectSetFileSnapshot readSnapshot(DataInputStream input, long maxLength) throws IOException {
+		String psfPath = readString(input, maxLength);
+		if (psfPath == null) {
+			throw new IOException("Missing project set file path"); //$NON-NLS-1$
+		}
+		IFile psfFile = ProjectSetPlugin.getWorkspace().getRoot().getFile(new Path(psfPath));
+		FileSignature psfSignature = readSignature(input);
+		FileSignature pplSignature = readSignature(input);
+		boolean corrupted = input.readBoolean();
+
+		Map<String, List<String>> referenceMap = null;
+		int providerCount = readCount(input, maxLength);
+		if (providerCount >= 0) {
+			referenceMap = new LinkedHashMap<String, List<String>>();
+			for (int i = 0; i < providerCount; i++) {
+				String provider = readString(input, maxLength);
+				int referenceCount = readCount(input, maxLength);
+				List<String> references = new ArrayList<String>(referenceCount);
+				for (int j = 0; j < referenceCount; j++) {
+					references.add(readString(input, maxLength));
+				}
+				referenceMap.put(provider, references);
+			}
+		}
+
+		Map<String, String> preferredLocationMap = null;
+		int locationCount = readCount(input, maxLength);
+		if (locationCount >= 0) {
+			preferredLocationMap = new HashMap<String, String>();
+			for (int i = 0; i < locationCount; i++) {
+				preferredLocationMap.put(readString(input, maxLength), readString(input, maxLength));
+			}
+		}
+		return ProjectSetFileSnapshot.restore(psfFile, psfSignature, pplSignature, referenceMap, corrupted, preferredLocationMap);
+	}
+
+	private static void writeSignature(DataOutputStream output, FileSignature signature) throws IOException {
+		output.writeBoolean(signature != null);
+		if (signature != null) {
+			output.writeLong(signature.getLength());
+			output.writeLong(signature.getLastModified());
+			output.writeInt(signature.getHash().length);
+			output.write(signature.getHash());
+		}
+	}
+
+	private static FileSignature readSignature(DataInputStream input) throws IOException {
+		if (!input.readBoolean()) {
+			return null;
+		}
+		long length = input.readLong();
+		long lastModified = input.readLong();
+		byte[] hash = new byte[readLength(input, MAX_HASH_LENGTH)];
+		input.readFully(hash);
+		return new FileSignature(length, lastModified, hash);
+	}
+
+	private static void writeString(DataOutputStream output, String string) throws IOException {
+		if (string == null) {
+			output.writeInt(-1);
+		} else {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream input, long maxLength) throws IOException {
+		int length = input.readInt();
+		if (length == -1) {
+			return null;
+		}
+		checkLength(length, maxLength);
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a count of items, -1 for a null collection. Each item takes at
+	 * least 4 bytes, so the count cannot exceed a quarter of the file size.
+	 */
+	private static int readCount(DataInputStream input, long maxLength) throws IOException {
+		int count = input.readInt();
+		if (count == -1) {
+			return count;
+		}
+		checkLength(count, maxLength / 4);
+		return count;
+	}
+
+	/**
+	 * Reads a length that must not exceed maxLength
+	 */
+	private static int readLength(DataInputStream input, long maxLength) throws IOException {
+		int length = input.readInt();
+		checkLength(length, maxLength);
+		return length;
+	}
+
+	private static void checkLength(int length, long maxLength) throws IOException {
+		if ((length < 0) || (length > maxLength)) {
+			throw new IOException("Invalid length " + length); //$NON-NLS-1$
+		}
+	}
+}
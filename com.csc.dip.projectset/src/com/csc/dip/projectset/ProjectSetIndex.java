@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Workspace wide index of the project set entries of the project set projects.
+ * Maps each project name to the entries (including the entries of sub project sets)
+ * that refer to the project.
+ *
+ * The index is built on first use and kept up to date by ProjectSetPlugin,
+ * which updates the project set projects affected by a resource delta, and by
+ * the ProjectSetValidationJobs, which re-index the project sets they checked.
+ */
+public class ProjectSetIndex {
+
+	// key = project name, value = (key = project set project, value = entries of the project set project referring to the project)
+	// (sub project sets are shared, so an entry may be indexed for several project set projects)
+	private Map<String, Map<IProject, List<ProjectSetEntry>>> entriesByProjectName = new HashMap<String, Map<IProject, List<ProjectSetEntry>>>();
+
+	// key = project set project, value = indexed entries of the project
+	private Map<IProject, List<ProjectSetEntry>> entriesByProjectSetProject = new HashMap<IProject, List<ProjectSetEntry>>();
+
+	private boolean initialized = false;
+
+	/**
+	 * Constructor for ProjectSetIndex.
+	 */
+	public ProjectSetIndex() {
+		super();
+	}
+
+	/**
+	 * Returns the entries that refer to the project
+	 */
+	public synchronized List<ProjectSetEntry> getReferencingEntries(String projectName) {
+		initialize();
+		Set<ProjectSetEntry> referencingEntries = Collections.newSetFromMap(new IdentityHashMap<ProjectSetEntry, Boolean>());
+		List<ProjectSetEntry> entryList = new ArrayList<ProjectSetEntry>();
+		Map<IProject, List<ProjectSetEntry>> entriesByProject = entriesByProjectName.get(projectName);
+		if (entriesByProject != null) {
+			Iterator<List<ProjectSetEntry>> entriesIterator = entriesByProject.values().iterator();
+			while (entriesIterator.hasNext()) {
+				Iterator<ProjectSetEntry> entryIterator = entriesIterator.next().iterator();
+				while (entryIterator.hasNext()) {
+					ProjectSetEntry psEntry = entryIterator.next();
+					if (referencingEntries.add(psEntry)) {
+						entryList.add(psEntry);
+					}
+				}
+			}
+		}
+		return entryList;
+	}
+
+	/**
+	 * Returns the project sets (root or sub project sets) with entries that refer to the project
+	 */
+	public synchronized List<ProjectSet> getReferencingProjectSets(String projectName) {
+		Set<ProjectSet> projectSets = Collections.newSetFromMap(new IdentityHashMap<ProjectSet, Boolean>());
+		List<ProjectSet> referencingProjectSets = new ArrayList<ProjectSet>();
+		Iterator<ProjectSetEntry> entryIterator = getReferencingEntries(projectName).iterator();
+		while (entryIterator.hasNext()) {
+			ProjectSet projectSet = entryIterator.next().getProjectSet();
+			if (projectSets.add(projectSet)) {
+				referencingProjectSets.add(projectSet);
+			}
+		}
+		return referencingProjectSets;
+	}
+
+	/**
+	 * Returns the project set projects whose project set (directly or in a sub project set)
+	 * refers to at least one of the projects
+	 */
+	public synchronized Set<IProject> getReferencingProjectSetProjects(Collection<String> projectNames) {
+		initialize();
+		Set<IProject> projects = new HashSet<IProject>();
+		Iterator<String> nameIterator = projectNames.iterator();
+		while (nameIterator.hasNext()) {
+			Map<IProject, List<ProjectSetEntry>> entriesByProject = entriesByProjectName.get(nameIterator.next());
+			if (entriesByProject != null) {
+				projects.addAll(entriesByProject.keySet());
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * Re-indexes the entries of the project set project.
+	 * Removes the project from the index if it is no (accessible) project set project.
+	 */
+	public synchronized void update(IProject project) {
+		if (!initialized) {
+			// the project is indexed on initialization
+			return;
+		}
+		remove(project);
+		add(project);
+	}
+
+	/**
+	 * Re-indexes the project set project with the entries of the project set,
+	 * removes the project from the index if the project set is null.
+	 * The project set is walked before the lock of the index is taken, so it
+	 * must not be changed by other threads (see ProjectSet.createDetached).
+	 */
+	public void update(IProject project, ProjectSet projectSet) {
+		List<ProjectSetEntry> entries = (projectSet == null) ? null : getEntries(projectSet);
+		synchronized (this) {
+			if (!initialized) {
+				// the project is indexed on initialization
+				return;
+			}
+			remove(project);
+			if (entries != null) {
+				add(project, entries);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries of the project set project from the index
+	 */
+	public synchronized void remove(IProject project) {
+		List<ProjectSetEntry> entries = entriesByProjectSetProject.remove(project);
+		if (entries == null) {
+			return;
+		}
+		Iterator<ProjectSetEntry> entryIterator = entries.iterator();
+		while (entryIterator.hasNext()) {
+			String projectName = entryIterator.next().getProjectName();
+			Map<IProject, List<ProjectSetEntry>> entriesByProject = entriesByProjectName.get(projectName);
+			if (entriesByProject != null) {
+				entriesByProject.remove(project);
+				if (entriesByProject.isEmpty()) {
+					entriesByProjectName.remove(projectName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries, the index is rebuilt on next use
+	 */
+	public synchronized void clear() {
+		entriesByProjectName.clear();
+		entriesByProjectSetProject.clear();
+		initialized = false;
+	}
+
+	private void initialize() {
+		if (initialized) {
+			return;
+		}
+		initialized = true;
+		IProject[] projects = ProjectSetPlugin.getWorkspace().getRoot().getProjects();
+		for (int i = 0; i < projects.length; i++) {
+			add(projects[i]);
+		}
+	}
+
+	private void add(IProject project) {
+		if (!project.isAccessible()) {
+			return;
+		}
+		ProjectSetNature psNature = null;
+		try {
+			psNature = (ProjectSetNature) project.getNature(ProjectSetNature.PS_PROJECT_NATURE_ID);
+		} catch (CoreException e) {
+		}
+		ProjectSet projectSet = (psNature == null) ? null : psNature.getProjectSet();
+		if (projectSet == null) {
+			return;
+		}
+		add(project, getEntries(projectSet));
+	}
+
+	private void add(IProject project, List<ProjectSetEntry> entries) {
+		Iterator<ProjectSetEntry> entryIterator = entries.iterator();
+		while (entryIterator.hasNext()) {
+			ProjectSetEntry entry = entryIterator.next();
+			Map<IProject, List<ProjectSetEntry>> entriesByProject = entriesByProjectName.get(entry.getProjectName());
+			if (entriesByProject == null) {
+				entriesByProject = new LinkedHashMap<IProject, List<ProjectSetEntry>>();
+				entriesByProjectName.put(entry.getProjectName(), entriesByProject);
+			}
+			List<ProjectSetEntry> referencingEntries = entriesByProject.get(project);
+			if (referencingEntries == null) {
+				referencingEntries = new ArrayList<ProjectSetEntry>();
+				entriesByProject.put(project, referencingEntries);
+			}
+			referencingEntries.add(entry);
+		}
+		entriesByProjectSetProject.put(project, entries);
+	}
+
+	/**
+	 * Returns the entries of the project set (including the entries of sub project sets)
+	 */
+	private static List<ProjectSetEntry> getEntries(ProjectSet projectSet) {
+		final List<ProjectSetEntry> entries = new ArrayList<ProjectSetEntry>();
+		projectSet.accept(new IProjectSetEntryVisitor() {
+			public boolean visit(ProjectSetEntry entry) {
+				entries.add(entry);
+				return true;
+			}
+		});
+		return entries;
+	}
+}
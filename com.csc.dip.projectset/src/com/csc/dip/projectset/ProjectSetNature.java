@@ -141,6 +141,16 @@ public class ProjectSetNature implements IProjectNature {
 	 * or null if not exists
 	 */	
 	public ProjectSet getProjectSet() {
+		return getProjectSet(true);
+	}
+
+	/**
+	 * Returns the project set for the project
+	 * or null if not exists.
+	 * A project set that is not cached yet is only updated if update is true
+	 * (the caller updates it itself otherwise).
+	 */
+	ProjectSet getProjectSet(boolean update) {
 		IFile psfFile = getProjectSetFile();
 		if (psfFile == null) {
 			return null;
@@ -163,7 +173,9 @@ public class ProjectSetNature implements IProjectNature {
 				projectSet = new ProjectSet(psfFile, false);
 				psfFile.setSessionProperty(CACHED_PROJECT_SET_QUALIFIED_NAME, projectSet);
 				psfFile.setSessionProperty(CACHED_PROJECT_SET_MODIFICATION_STAMP_QUALIFIED_NAME, new Long(currentModificationStamp));
-				projectSet.update();
+				if (update) {
+					projectSet.update();
+				}
 			}
 		} catch (CoreException e) {
 			// TODO: handle exception
@@ -19,16 +19,26 @@ package com.csc.dip.projectset;
  * @author Dirk Baumann
  */
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Plugin;
+import org.eclipse.core.runtime.Status;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -42,6 +52,14 @@ public class ProjectSetPlugin extends Plugin implements IResourceChangeListener
 	private static ProjectSetPlugin plugin;
 	//Resource bundle.
 	private ResourceBundle resourceBundle;
+	//Cache for the references of loaded projects.
+	private ProjectReferenceCache projectReferenceCache;
+	//Index of the project set entries by project name.
+	private ProjectSetIndex projectSetIndex;
+	//Cache for the path variables.
+	private PathVariableCache pathVariableCache;
+	//Cache for the parsed project set files.
+	private ProjectSetFileCache projectSetFileCache;
 	
 	/**
 	 * The constructor.
@@ -90,48 +108,82 @@ public class ProjectSetPlugin extends Plugin implements IResourceChangeListener
 		return resourceBundle;
 	}
 
+	/**
+	 * Returns the cache for the references of loaded projects
+	 */
+	public ProjectReferenceCache getProjectReferenceCache() {
+		return projectReferenceCache;
+	}
+
+	/**
+	 * Returns the index of the project set entries by project name
+	 */
+	public ProjectSetIndex getProjectSetIndex() {
+		return projectSetIndex;
+	}
+
+	/**
+	 * Returns the cache for the path variables
+	 */
+	public PathVariableCache getPathVariableCache() {
+		return pathVariableCache;
+	}
+
+	/**
+	 * Returns the cache for the parsed project set files
+	 */
+	public ProjectSetFileCache getProjectSetFileCache() {
+		return projectSetFileCache;
+	}
+
 	public void resourceChanged(IResourceChangeEvent event) {
-		/*
-		final List dummyList = new ArrayList();
-		System.out.println("RESOURCE CHANGED -> build all psf ");
+		IResourceDelta delta = event.getDelta();
+		if (delta == null) {
+			buildAllProjectSetProjects();
+			return;
+		}
+		ProjectSetDeltaAnalyser analyser = new ProjectSetDeltaAnalyser();
 		try {
-			event.getDelta().accept(new IResourceDeltaVisitor() {
-					public boolean visit(IResourceDelta delta) throws CoreException {
-						boolean updateRequired = false;
-						if (delta.getResource().getType() == IResource.PROJECT) {
-							updateRequired = true;
-						} else 
-						if (delta.getResource().getType() == IResource.FILE) {
-							IFile file = (IFile)delta.getResource().getAdapter(IFile.class);
-							// check if file is part of ps project
-							// ...
-							String extension = file.getFileExtension().toLowerCase();
-							if ((extension.equals("psf")) || (extension.equals("psproject"))) {
-								updateRequired = true;
-							}
-						}
-						
-						if (updateRequired) {
-							dummyList.add("42");
-							return false;
-						} else {
-							return true;
-						}
-					}					
-			});		
+			analyser.analyse(delta);
 		} catch (CoreException e) {
-			e.printStackTrace();
-		}
-		
-		
-		if (!dummyList.isEmpty()) {
-		*/
-		if (true) {
 			buildAllProjectSetProjects();
+			return;
+		}
+		if (!analyser.isEmpty()) {
+			List<IProject> affectedProjects = analyser.getAffectedProjects(getProjectSetProjects(), projectSetIndex);
+			buildProjectSetProjects(affectedProjects);
+
+			// the sub project sets of the affected projects are updated by the build
+			Set<IProject> changedProjects = new HashSet<IProject>(affectedProjects);
+			changedProjects.addAll(analyser.getChangedProjectSetProjects());
+			if (ProjectSetBuilder.isAsynchronousValidation()) {
+				// the affected projects are re-indexed by their validation jobs, after they are updated
+				changedProjects.removeAll(affectedProjects);
+			}
+			Iterator<IProject> projectIterator = changedProjects.iterator();
+			while (projectIterator.hasNext()) {
+				projectSetIndex.update(projectIterator.next());
+			}
 		}
 	}
 
 	protected void buildAllProjectSetProjects() {
+		buildProjectSetProjects(getProjectSetProjects());
+		projectSetIndex.clear();
+	}
+
+	protected void buildProjectSetProjects(List<IProject> projects) {
+		Iterator<IProject> projectIterator = projects.iterator();
+		while (projectIterator.hasNext()) {
+			new ProjectSetBuilder().validate(projectIterator.next());
+		}
+	}
+
+	/**
+	 * Returns the accessible projects with project set nature
+	 */
+	protected List<IProject> getProjectSetProjects() {
+		List<IProject> psProjects = new ArrayList<IProject>();
 		IProject[] projects = ProjectSetPlugin.getWorkspace().getRoot().getProjects();
 		for (int i = 0; i < projects.length; i++) {			
 			IProject project = projects[i];
@@ -142,10 +194,18 @@ public class ProjectSetPlugin extends Plugin implements IResourceChangeListener
 				} catch (CoreException e) {
 				}
 				if (psNature != null) {
-					new ProjectSetBuilder().updateErrorMarkers(project);
+					psProjects.add(project);
 				}
 			}			
 		}
+		return psProjects;
+	}
+
+	/**
+	 * Returns the file in the state location with the persisted project set files
+	 */
+	protected File getProjectSetFileStoreFile() {
+		return getStateLocation().append(ProjectSetFileStore.FILENAME).toFile();
 	}
 
 	/**
@@ -153,6 +213,13 @@ public class ProjectSetPlugin extends Plugin implements IResourceChangeListener
 	 */
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
+		projectReferenceCache = new ProjectReferenceCache();
+		projectReferenceCache.startup();
+		projectSetIndex = new ProjectSetIndex();
+		pathVariableCache = new PathVariableCache();
+		pathVariableCache.startup();
+		projectSetFileCache = new ProjectSetFileCache();
+		projectSetFileCache.restore(getProjectSetFileStoreFile());
 		getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_BUILD);
 	}
 
@@ -161,6 +228,15 @@ public class ProjectSetPlugin extends Plugin implements IResourceChangeListener
 	 */
 	public void stop(BundleContext context) throws Exception {
 		getWorkspace().removeResourceChangeListener(this);
+		ProjectSetValidationJob.cancelAll();
+		projectReferenceCache.shutdown();
+		pathVariableCache.shutdown();
+		try {
+			projectSetFileCache.persist(getProjectSetFileStoreFile());
+		} catch (IOException e) {
+			getLog().log(new Status(IStatus.WARNING, PLUGIN_ID, IStatus.OK, e.getMessage(), e));
+		}
+		projectSetFileCache.clear();
 		super.stop(context);
 	}
 }
@@ -22,6 +22,8 @@ public class ProjectSetPreferenceInitializer extends AbstractPreferenceInitializ
 
 	public void initializeDefaultPreferences() {
 		DefaultScope.INSTANCE.getNode(ProjectSetPlugin.PLUGIN_ID).putBoolean(IProjectSetConstants.REFRESH_BEFORE_LOADING_PREFERENCE, false);
+		DefaultScope.INSTANCE.getNode(ProjectSetPlugin.PLUGIN_ID).putBoolean(IProjectSetConstants.CONCURRENT_LOADING_PREFERENCE, false);
+		DefaultScope.INSTANCE.getNode(ProjectSetPlugin.PLUGIN_ID).putBoolean(IProjectSetConstants.ASYNCHRONOUS_VALIDATION_PREFERENCE, false);
 	}
 
 }
@@ -22,7 +22,6 @@ package com.csc.dip.projectset;
  * This is a utility class with methods used by various classes in the plugin
  */
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -164,6 +163,9 @@ public class ProjectSetUtil {
 		return projectReferenceAnalyserMap;
 	}	
 
+	/**
+	 * Returns true if the paths are equal as java.io.File (see PathKey)
+	 */
 	public static boolean pathEquals(String path, String otherPath) {
 		if (path == null) {
 			return (otherPath == null);
@@ -171,7 +173,7 @@ public class ProjectSetUtil {
 			if (otherPath == null) {
 				return false;
 			} else {
-				return new File(path).equals(new File(otherPath));
+				return PathKey.valueOf(path).equals(PathKey.valueOf(otherPath));
 			}
 		}
 	}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Updates the project set markers of a project set project outside of the
+ * workspace build (see ASYNCHRONOUS_VALIDATION_PREFERENCE).
+ *
+ * There is one job per project set project. Validating a project again
+ * cancels a running validation of the project and schedules the job again,
+ * so only the last validation publishes its markers.
+ * The jobs of different projects do not run at the same time.
+ *
+ * A job checks a detached project set, so the shared project sets are not
+ * changed while the index or the workspace build use them. The lock of the
+ * ProjectSetIndex is only held to re-index the project with the checked
+ * project set (see ProjectSetBuilder.updateErrorMarkers).
+ */
+class ProjectSetValidationJob extends Job {
+
+	/**
+	 * The family of all validation jobs
+	 */
+	public static final Object FAMILY = ProjectSetValidationJob.class;
+
+	// delay for collecting validations of the same project
+	private static final long DELAY = 100;
+
+	private static final ISchedulingRule VALIDATION_RULE = new ISchedulingRule() {
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
+
+	// key = project set project, value = validation job of the project
+	private static Map<IProject, ProjectSetValidationJob> jobs = new HashMap<IProject, ProjectSetValidationJob>();
+
+	private final IProject project;
+
+	/**
+	 * Constructor for ProjectSetValidationJob.
+	 */
+	private ProjectSetValidationJob(IProject project) {
+		super(MessageFormat.format(Messages.getString("ProjectSetValidationJob.Validating_project_set_of_{0}"), new Object[] {project.getName()})); //$NON-NLS-1$
+		this.project = project;
+		setRule(VALIDATION_RULE);
+		setSystem(true);
+		setPriority(Job.BUILD);
+	}
+
+	/**
+	 * Schedules the validation of the project, a running validation of the project is canceled
+	 */
+	public static synchronized void validate(IProject project) {
+		ProjectSetValidationJob job = jobs.get(project);
+		if (job == null) {
+			job = new ProjectSetValidationJob(project);
+			jobs.put(project, job);
+		}
+		job.cancel();
+		job.schedule(DELAY);
+	}
+
+	/**
+	 * Cancels all validations
+	 */
+	public static synchronized void cancelAll() {
+		Iterator<ProjectSetValidationJob> jobIterator = jobs.values().iterator();
+		while (jobIterator.hasNext()) {
+			jobIterator.next().cancel();
+		}
+		jobs.clear();
+	}
+
+	private static synchronized void removeJob(ProjectSetValidationJob job) {
+		if (jobs.get(job.project) == job) {
+			jobs.remove(job.project);
+		}
+	}
+
+	public boolean belongsTo(Object family) {
+		return family == FAMILY;
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		ProjectSetPlugin plugin = ProjectSetPlugin.getDefault();
+		if ((plugin == null) || !project.exists()) {
+			removeJob(this);
+			return Status.OK_STATUS;
+		}
+		try {
+			new ProjectSetBuilder().updateErrorMarkers(project, monitor, plugin.getProjectSetIndex());
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		}
+		return Status.OK_STATUS;
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is used by ProjectSet to detect path inclusions of project set entries.
+ * It finds the same conflicts as PathInclusionDetector without building a tree of
+ * path keys: each location is normalized to a key string that ends with a separator,
+ * so an ancestor location is a prefix of the key. The keys are sorted and swept once,
+ * with a stack of the locations that contain the current location.
+ */
+public class SortedPathInclusionDetector implements IPathInclusionDetector {
+
+	private static final Comparator<PathEntry> KEY_COMPARATOR = new Comparator<PathEntry>() {
+		public int compare(PathEntry pathEntry1, PathEntry pathEntry2) {
+			return pathEntry1.key.compareTo(pathEntry2.key);
+		}
+	};
+
+	private static class PathEntry {
+
+		private final String key;
+		private final ProjectSetEntry entry;
+
+		public PathEntry(String key, ProjectSetEntry entry) {
+			super();
+			this.key = key;
+			this.entry = entry;
+		}
+	}
+
+	private List<PathEntry> pathEntries = new ArrayList<PathEntry>();
+	private Map<ProjectSetEntry, Collection<ProjectSetEntry>> conflictMap;
+
+	public void addPath(PathKey resolvedPath, ProjectSetEntry entry) {
+		pathEntries.add(new PathEntry(toKey(resolvedPath), entry));
+	}
+
+	/**
+	 * Returns the key of the path with a separator at the end
+	 */
+	protected static String toKey(PathKey path) {
+		String key = path.getKey();
+		if (!key.endsWith(File.separator)) {
+			key = key + File.separator;
+		}
+		return key;
+	}
+
+	// Returns a map with key = projectSetEntry and value = Set of conflicting projectSetEntries
+	public Map<ProjectSetEntry, Collection<ProjectSetEntry>> getConflicts() {
+		conflictMap = new HashMap<ProjectSetEntry, Collection<ProjectSetEntry>>();
+		List<PathEntry> sortedEntries = new ArrayList<PathEntry>(pathEntries);
+		Collections.sort(sortedEntries, KEY_COMPARATOR);
+
+		// keys and entries of the locations that contain the current location
+		List<String> parentKeys = new ArrayList<String>();
+		List<Set<ProjectSetEntry>> parentEntries = new ArrayList<Set<ProjectSetEntry>>();
+
+		int index = 0;
+		while (index < sortedEntries.size()) {
+			// all entries with the same location
+			String key = sortedEntries.get(index).key;
+			Set<ProjectSetEntry> nodeEntries = new LinkedHashSet<ProjectSetEntry>();
+			while ((index < sortedEntries.size()) && sortedEntries.get(index).key.equals(key)) {
+				nodeEntries.add(sortedEntries.get(index).entry);
+				index++;
+			}
+
+			// locations that do not contain this location do not contain the following ones
+			while (!parentKeys.isEmpty() && !key.startsWith(parentKeys.get(parentKeys.size() - 1))) {
+				parentKeys.remove(parentKeys.size() - 1);
+				parentEntries.remove(parentEntries.size() - 1);
+			}
+
+			// all entries of the containing locations are conflicts
+			Iterator<ProjectSetEntry> nodeEntriesIt = nodeEntries.iterator();
+			while (nodeEntriesIt.hasNext()) {
+				ProjectSetEntry nodeEntry = nodeEntriesIt.next();
+				Iterator<Set<ProjectSetEntry>> parentEntriesIt = parentEntries.iterator();
+				while (parentEntriesIt.hasNext()) {
+					Iterator<ProjectSetEntry> parentNodeEntriesIt = parentEntriesIt.next().iterator();
+					while (parentNodeEntriesIt.hasNext()) {
+						ProjectSetEntry parentEntry = parentNodeEntriesIt.next();
+						addConflict(nodeEntry, parentEntry);
+						addConflict(parentEntry, nodeEntry);
+					}
+				}
+			}
+
+			// entries of different projects with the same location are conflicts
+			if (nodeEntries.size() > 1) {
+				nodeEntriesIt = nodeEntries.iterator();
+				while (nodeEntriesIt.hasNext()) {
+					ProjectSetEntry nodeEntry = nodeEntriesIt.next();
+					Iterator<ProjectSetEntry> nodeEntriesIt2 = nodeEntries.iterator();
+					while (nodeEntriesIt2.hasNext()) {
+						ProjectSetEntry nodeEntry2 = nodeEntriesIt2.next();
+						if (!nodeEntry.getProjectName().equals(nodeEntry2.getProjectName())) {
+							addConflict(nodeEntry, nodeEntry2);
+						}
+					}
+				}
+			}
+
+			parentKeys.add(key);
+			parentEntries.add(nodeEntries);
+		}
+		return conflictMap;
+	}
+
+	private void addConflict(ProjectSetEntry entry, ProjectSetEntry conflictEntry) {
+		Collection<ProjectSetEntry> existingConflicts = conflictMap.get(entry);
+		if (existingConflicts == null) {
+			existingConflicts = new HashSet<ProjectSetEntry>();
+			conflictMap.put(entry, existingConflicts);
+		}
+		existingConflicts.add(conflictEntry);
+	}
+}
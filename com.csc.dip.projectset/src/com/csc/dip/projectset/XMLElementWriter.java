@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (C) 2018 DXC Technology
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.csc.dip.projectset;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal streaming writer for XML files that contain only elements
+ * with attributes (like psf and ppl files).
+ *
+ * The output is the same as the output of XMLUtil.writeDocument for
+ * a document with the same content: XML declaration, empty elements
+ * collapsed and attribute values escaped like the JDK serializer does.
+ * The line breaks and the indentation differ between the JDK versions
+ * (e.g. no indentation on Java 8, 4 spaces on Java 9 and later), they
+ * are given by a Layout (see XMLUtil.getSerializerLayout).
+ */
+public class XMLElementWriter {
+
+	/**
+	 * The line breaks and indentation of the written XML
+	 */
+	public static class Layout {
+
+		private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		/**
+		 * Layout with 4 spaces indentation and the system line separator
+		 */
+		public static final Layout DEFAULT = new Layout(LINE_SEPARATOR, LINE_SEPARATOR, "    "); //$NON-NLS-1$
+
+		private final String declarationEnd;
+		private final String lineSeparator;
+		private final String indent;
+
+		/**
+		 * Creates a layout, declarationEnd is written after the XML declaration,
+		 * lineSeparator after each element and indent once per level
+		 */
+		public Layout(String declarationEnd, String lineSeparator, String indent) {
+			super();
+			this.declarationEnd = declarationEnd;
+			this.lineSeparator = lineSeparator;
+			this.indent = indent;
+		}
+	}
+
+	private Writer writer;
+	private Layout layout;
+
+	// names of the open elements
+	private List<String> openElements = new ArrayList<String>();
+
+	// true if the start tag of the current element is not closed yet
+	private boolean startTagOpen = false;
+
+	/**
+	 * Creates a writer with the default layout and writes the XML declaration
+	 */
+	public XMLElementWriter(Writer writer, String encoding) throws IOException {
+		this(writer, encoding, Layout.DEFAULT);
+	}
+
+	/**
+	 * Creates a writer and writes the XML declaration
+	 */
+	public XMLElementWriter(Writer writer, String encoding, Layout layout) throws IOException {
+		this.writer = writer;
+		this.layout = layout;
+		writer.write("<?xml version=\"1.0\" encoding=\""); //$NON-NLS-1$
+		writer.write(encoding);
+		writer.write("\" standalone=\"no\"?>"); //$NON-NLS-1$
+		writer.write(layout.declarationEnd);
+	}
+
+	/**
+	 * Starts a new element as child of the current element
+	 */
+	public void startElement(String name) throws IOException {
+		if (startTagOpen) {
+			writer.write('>');
+			writer.write(layout.lineSeparator);
+		}
+		writeIndent();
+		writer.write('<');
+		writer.write(name);
+		openElements.add(name);
+		startTagOpen = true;
+	}
+
+	/**
+	 * Adds an attribute to the current element.
+	 * Must be called before any child element is started.
+	 */
+	public void attribute(String name, String value) throws IOException {
+		if (!startTagOpen) {
+			throw new IllegalStateException();
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\""); //$NON-NLS-1$
+		writeEscaped(value);
+		writer.write('"');
+	}
+
+	/**
+	 * Ends the current element
+	 */
+	public void endElement() throws IOException {
+		String name = openElements.remove(openElements.size() - 1);
+		if (startTagOpen) {
+			writer.write("/>"); //$NON-NLS-1$
+			startTagOpen = false;
+		} else {
+			writeIndent();
+			writer.write("</"); //$NON-NLS-1$
+			writer.write(name);
+			writer.write('>');
+		}
+		writer.write(layout.lineSeparator);
+	}
+
+	/**
+	 * Ends all open elements and closes the underlying writer
+	 */
+	public void close() throws IOException {
+		while (!openElements.isEmpty()) {
+			endElement();
+		}
+		writer.close();
+	}
+
+	private void writeIndent() throws IOException {
+		for (int i = 0; i < openElements.size(); i++) {
+			writer.write(layout.indent);
+		}
+	}
+
+	/**
+	 * Writes an attribute value, control and supplementary characters
+	 * are written as character references
+	 */
+	private void writeEscaped(String value) throws IOException {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '&' :
+					writer.write("&amp;"); //$NON-NLS-1$
+					break;
+				case '<' :
+					writer.write("&lt;"); //$NON-NLS-1$
+					break;
+				case '>' :
+					writer.write("&gt;"); //$NON-NLS-1$
+					break;
+				case '"' :
+					writer.write("&quot;"); //$NON-NLS-1$
+					break;
+				default :
+					if (ch < 0x20) {
+						writeCharacterReference(ch);
+					} else if (Character.isHighSurrogate(ch) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+						writeCharacterReference(Character.toCodePoint(ch, value.charAt(i + 1)));
+						i++;
+					} else {
+						writer.write(ch);
+					}
+			}
+		}
+	}
+
+	private void writeCharacterReference(int codePoint) throws IOException {
+		writer.write("&#"); //$NON-NLS-1$
+		writer.write(Integer.toString(codePoint));
+		writer.write(';');
+	}
+}
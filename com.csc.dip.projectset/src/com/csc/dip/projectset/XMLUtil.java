@@ -22,16 +22,23 @@ package com.csc.dip.projectset;
  * This is a utility class with methods for XML processing
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -43,12 +50,19 @@ import javax.xml.transform.stream.StreamResult;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 public class XMLUtil {
 	
 	public static final String ENCODING = "UTF-8"; //$NON-NLS-1$
 
+	// for caching, the factories are not changed after creation
+	private static XMLInputFactory inputFactory;
+	private static DocumentBuilderFactory documentBuilderFactory;
+	private static TransformerFactory transformerFactory;
+	private static XMLElementWriter.Layout serializerLayout;
+
 	/**
 	 * Constructor for XMLUtil.
 	 */
@@ -56,19 +70,50 @@ public class XMLUtil {
 		super();
 	}
 	
+	/**
+	 * Writes the content of a XML file that is produced by a XMLElementWriter
+	 */
+	public interface ElementContent {
+		public void write(XMLElementWriter writer) throws IOException;
+	}
+
+	/**
+	 * Byte array stream that can be read without copying its content
+	 */
+	private static class ContentBuffer extends ByteArrayOutputStream {
+		public ContentBuffer() {
+			super(8192);
+		}
+
+		public InputStream toInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Writes a XML file element by element without building a document
+	 */
+	public static void writeElements(ElementContent content, IFile file) throws IOException, CoreException {
+		// write out temporary in Byte array and use file.setcontent/create to support watch/edit mode
+		ContentBuffer outStream = new ContentBuffer();
+		XMLElementWriter writer = new XMLElementWriter(new BufferedWriter(new OutputStreamWriter(outStream, ENCODING)), ENCODING, getSerializerLayout());
+		try {
+			content.write(writer);
+		} finally {
+			writer.close();
+		}
+		setContents(file, outStream.toInputStream());
+	}
+
 	/**
 	 * Writes a XML document to a file
 	 */
 	public static void writeDocument(Document document, IFile file) throws IOException, CoreException {
 		// write out temporary in Byte array and use file.setcontent/create to support watch/edit mode
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		ContentBuffer outStream = new ContentBuffer();
 		OutputStreamWriter writer = new OutputStreamWriter(outStream, ENCODING);
 		try {
-			Transformer transformer = TransformerFactory.newInstance().newTransformer();
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml"); //$NON-NLS-1$
-			transformer.setOutputProperty(OutputKeys.ENCODING, ENCODING);
-			transformer.transform(new DOMSource(document), new StreamResult(writer));
+			createTransformer().transform(new DOMSource(document), new StreamResult(writer));
 		} catch (TransformerConfigurationException e) {
 			throw (IOException) new IOException(e.toString()).initCause(e);
 		} catch (TransformerException e) {
@@ -77,7 +122,56 @@ public class XMLUtil {
 			outStream.close();
 		}
 		
-		InputStream inputStream = new ByteArrayInputStream(outStream.toByteArray());
+		setContents(file, outStream.toInputStream());
+	}
+
+	private static Transformer createTransformer() throws TransformerConfigurationException {
+		Transformer transformer = getTransformerFactory().newTransformer();
+		transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
+		transformer.setOutputProperty(OutputKeys.METHOD, "xml"); //$NON-NLS-1$
+		transformer.setOutputProperty(OutputKeys.ENCODING, ENCODING);
+		return transformer;
+	}
+
+	/**
+	 * Returns the line breaks and indentation written by writeDocument on this
+	 * Java runtime, so that writeElements writes the same output (files written
+	 * before are not reformatted). The layout is taken from a small sample document.
+	 */
+	static synchronized XMLElementWriter.Layout getSerializerLayout() {
+		if (serializerLayout == null) {
+			serializerLayout = XMLElementWriter.Layout.DEFAULT;
+			try {
+				Document document = createNewDocument();
+				Element parent = document.createElement("a"); //$NON-NLS-1$
+				document.appendChild(parent);
+				parent.appendChild(document.createElement("b")); //$NON-NLS-1$
+				StringWriter writer = new StringWriter();
+				createTransformer().transform(new DOMSource(document), new StreamResult(writer));
+				String sample = writer.toString();
+
+				// <?xml ...?>{declarationEnd}<a>{lineSeparator}{indent}<b/>
+				int declarationEnd = sample.indexOf("?>") + 2; //$NON-NLS-1$
+				int parentStart = sample.indexOf("<a>", declarationEnd); //$NON-NLS-1$
+				int childStart = sample.indexOf("<b", parentStart); //$NON-NLS-1$
+				if ((declarationEnd >= 2) && (parentStart != -1) && (childStart != -1)) {
+					String beforeChild = sample.substring(parentStart + 3, childStart);
+					int lineEnd = beforeChild.lastIndexOf('\n') + 1;
+					serializerLayout = new XMLElementWriter.Layout(
+						sample.substring(declarationEnd, parentStart),
+						beforeChild.substring(0, lineEnd),
+						beforeChild.substring(lineEnd));
+				}
+			} catch (ParserConfigurationException e) {
+				e.printStackTrace();
+			} catch (TransformerException e) {
+				e.printStackTrace();
+			}
+		}
+		return serializerLayout;
+	}
+
+	private static void setContents(IFile file, InputStream inputStream) throws CoreException {
 		if(file.exists()) {
 			file.setContents(inputStream, true, true, null);
 		} else {
@@ -92,10 +186,8 @@ public class XMLUtil {
 		throws 
 		ParserConfigurationException, SAXException,IOException{
 		
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		
 		//factory.setValidating(validating);
-		DocumentBuilder builder = factory.newDocumentBuilder();
+		DocumentBuilder builder = getDocumentBuilderFactory().newDocumentBuilder();
 		/*
 		builder.setErrorHandler(new ErrorHandler() {
 		 ...   
@@ -105,15 +197,63 @@ public class XMLUtil {
 		return builder.parse(file);
 	}
 	
+	/**
+	 * Opens a streaming (StAX) reader for a XML file.
+	 * 
+	 * The reader is not namespace aware, so element and attribute names
+	 * are the same as the node names of a document read by readDocument.
+	 * The caller must close the reader and the input stream.
+	 */
+	public static XMLStreamReader createStreamReader(InputStream inputStream) throws XMLStreamException {
+		return getInputFactory().createXMLStreamReader(inputStream);
+	}
+
+	/**
+	 * Opens a buffered input stream for the file, to be used with createStreamReader
+	 */
+	public static InputStream openInputStream(File file) throws IOException {
+		return new BufferedInputStream(new FileInputStream(file));
+	}
+
+	/**
+	 * Returns the shared input factory for streaming readers
+	 */
+	private static synchronized XMLInputFactory getInputFactory() {
+		if (inputFactory == null) {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			inputFactory = factory;
+		}
+		return inputFactory;
+	}
+
 	/**
 	 * Creates a new XML document
 	 */	
 	public static Document createNewDocument() throws ParserConfigurationException{
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		
-		//factory.setValidating(validating);
-		DocumentBuilder builder = factory.newDocumentBuilder();
+		DocumentBuilder builder = getDocumentBuilderFactory().newDocumentBuilder();
 		
 		return builder.newDocument();
 	}
+
+	/**
+	 * Returns the shared factory for document builders
+	 */
+	private static synchronized DocumentBuilderFactory getDocumentBuilderFactory() {
+		if (documentBuilderFactory == null) {
+			documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		}
+		return documentBuilderFactory;
+	}
+
+	/**
+	 * Returns the shared factory for transformers
+	 */
+	private static synchronized TransformerFactory getTransformerFactory() {
+		if (transformerFactory == null) {
+			transformerFactory = TransformerFactory.newInstance();
+		}
+		return transformerFactory;
+	}
 }